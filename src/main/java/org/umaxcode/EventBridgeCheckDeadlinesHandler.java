@@ -2,46 +2,99 @@ package org.umaxcode;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
-import org.umaxcode.service.impl.SQSServiceImpl;
+import org.umaxcode.domain.event.TaskEvent;
+import org.umaxcode.mapper.TaskEventCodec;
+import org.umaxcode.utils.AwsClients;
+import org.umaxcode.utils.CursorCodec;
+import org.umaxcode.utils.DeadlineBuckets;
+import org.umaxcode.utils.MetricsLogger;
+import org.umaxcode.utils.SqsBatches;
+import org.umaxcode.utils.TaskIndexRollout;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
 import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
 import software.amazon.awssdk.services.sqs.SqsClient;
-import software.amazon.awssdk.services.sqs.model.MessageAttributeValue;
-import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public class EventBridgeCheckDeadlinesHandler implements RequestHandler<Object, Void> {
 
+    private static final int SQS_BATCH_SIZE = 10;
+    private static final long CHECKPOINT_TTL_SECONDS = 24 * 60 * 60;
+    // The open partition of statusIndex, read as one shard while the bucket index is being rolled out
+    private static final String LEGACY_BUCKET = "legacy";
+
     private final DynamoDbClient dynamoDbClient;
     private final SqsClient sqsClient;
     private final String tasksTableName;
     private final String taskClosedTopicArn;
     private final String taskDeadlineTopicArn;
     private final String queueUrl;
+    private final String checkpointsTableName;
     private final ExecutorService executor;
+    private final Semaphore inFlight;
+    private final int shardCount;
+    private final long lookbackHours;
+    private final long maxCatchUpHours;
+    private final long timeMarginMillis;
+
+    // Wall clock time after which no new work is handed out in the current invocation
+    private volatile long stopAtMillis;
+    private volatile String invocationId;
 
     public EventBridgeCheckDeadlinesHandler() {
-        dynamoDbClient = DynamoDbClient.create();
-        sqsClient = SqsClient.create();
+        dynamoDbClient = AwsClients.dynamoDb();
+        sqsClient = AwsClients.sqs();
         tasksTableName = System.getenv("TASKS_TABLE_NAME");
         taskClosedTopicArn = System.getenv("TASKS_CLOSED_NOTIFICATION_TOPIC_ARN");
         taskDeadlineTopicArn = System.getenv("TASKS_DEADLINE_NOTIFICATION_TOPIC_ARN");
         queueUrl = System.getenv("QUEUE_URL");
-        executor = Executors.newFixedThreadPool(2);
+        checkpointsTableName = System.getenv("SWEEP_CHECKPOINTS_TABLE_NAME");
+        shardCount = DeadlineBuckets.shardCount();
+        lookbackHours = Long.parseLong(System.getenv().getOrDefault("DEADLINE_SWEEP_LOOKBACK_HOURS", "1"));
+        maxCatchUpHours = Long.parseLong(System.getenv().getOrDefault("DEADLINE_SWEEP_MAX_CATCH_UP_HOURS", "168"));
+        timeMarginMillis = Long.parseLong(System.getenv().getOrDefault("DEADLINE_SWEEP_TIME_MARGIN_MS", "5000"));
+
+        // Virtual threads are cheap enough for one per shard, page and write, the semaphore caps the AWS calls in flight
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        inFlight = new Semaphore(Integer.parseInt(System.getenv().getOrDefault("DEADLINE_SWEEP_MAX_IN_FLIGHT", "32")));
     }
 
     @Override
     public Void handleRequest(Object o, Context context) {
 
         System.out.println("Running EventBridgeCheckDeadlinesHandler");
+        stopAtMillis = System.currentTimeMillis() + context.getRemainingTimeInMillis() - timeMarginMillis;
+        invocationId = context.getAwsRequestId();
+
         CompletableFuture<Void> checkHitDeadline = CompletableFuture
                 .runAsync(this::checkTasksDeadlineDueAndWriteToSQS, executor);
 
@@ -58,29 +111,65 @@ public class EventBridgeCheckDeadlinesHandler implements RequestHandler<Object,
     private void checkTasksDeadlineDueAndWriteToSQS() {
 
         LocalDateTime now = LocalDateTime.now();
+        LocalDateTime currentHour = now.truncatedTo(ChronoUnit.HOURS);
 
-        QueryRequest queryRequest = QueryRequest.builder()
-                .tableName(tasksTableName)  // Main table name
-                .indexName("statusIndex")   // GSI name
-                .keyConditionExpression("#status = :open")
-                .filterExpression("deadline <= :current")
-                .expressionAttributeValues(Map.of(
-                        ":current", AttributeValue.builder().s(now.toString()).build(),
-                        ":open", AttributeValue.builder().s("open").build()
-                )).expressionAttributeNames(Map.of(
-                        "#status", "status"
-                ))
-                .build();
-
-        QueryResponse queryResponse = dynamoDbClient.query(queryRequest);
+        // Until the bucket index exists and older tasks carry a bucket, every open task is read as before
+        if (!TaskIndexRollout.deadlineBucketIndexReady(dynamoDbClient, checkpointsTableName)) {
+            sweep("deadline-due", List.of(LEGACY_BUCKET), null, bucket -> QueryRequest.builder()
+                            .tableName(tasksTableName)
+                            .indexName("statusIndex")
+                            .keyConditionExpression("#status = :open")
+                            .filterExpression("deadline <= :current")
+                            .expressionAttributeValues(Map.of(
+                                    ":current", AttributeValue.builder().s(now.toString()).build(),
+                                    ":open", AttributeValue.builder().s("open").build()
+                            )).expressionAttributeNames(Map.of(
+                                    "#status", "status"
+                            ))
+                            .build(),
+                    "task-hit-deadline", "Task has been closed", taskClosedTopicArn);
+            return;
+        }
 
-        System.out.println("Info: checkTasksDeadlineDueAndWriteToSQS");
+        // Sweeping starts at the low-water mark, the earliest hour not swept yet, so buckets left behind by an outage
+        // or a backfill are caught up instead of being skipped for good. Hours that still held due tasks or were not
+        // read to the end stay pending and are read again on every run, until expiry has taken all their tasks out of
+        // the sparse index, so a failed expiry is retried as it was when every open task was read.
+        DueSweepMark mark = readDueSweepMark();
+        LocalDateTime from = mark.hour() != null ? DeadlineBuckets.startOfHour(mark.hour()) : now.minusHours(lookbackHours);
+        LocalDateTime to = from.truncatedTo(ChronoUnit.HOURS).plusHours(maxCatchUpHours - 1);
+        if (to.isAfter(now)) {
+            to = now;
+        }
 
-        if (queryResponse.hasItems()) {
-            writeToQueue(queryResponse, "A task has reach deadline",
-                    "task-hit-deadline", "Task has been closed",
-                    taskClosedTopicArn);
+        Set<String> buckets = new LinkedHashSet<>(DeadlineBuckets.bucketsBetween(from, to, shardCount));
+        // The recent hours are read even while the catch-up is still far behind
+        buckets.addAll(DeadlineBuckets.bucketsBetween(now.minusHours(lookbackHours), now, shardCount));
+        for (String hour : mark.pendingHours()) {
+            buckets.addAll(DeadlineBuckets.bucketsBetween(DeadlineBuckets.startOfHour(hour),
+                    DeadlineBuckets.startOfHour(hour), shardCount));
         }
+
+        Set<String> unsettled = sweep("deadline-due", new ArrayList<>(buckets), null, bucket -> QueryRequest.builder()
+                        .tableName(tasksTableName)  // Main table name
+                        .indexName("deadlineBucketIndex")   // GSI name
+                        .keyConditionExpression("#deadlineBucket = :bucket AND deadline <= :current")
+                        .expressionAttributeValues(Map.of(
+                                ":current", AttributeValue.builder().s(now.toString()).build(),
+                                ":bucket", AttributeValue.builder().s(bucket).build()
+                        )).expressionAttributeNames(Map.of(
+                                "#deadlineBucket", DeadlineBuckets.ATTRIBUTE
+                        ))
+                        .build(),
+                "task-hit-deadline", "Task has been closed", taskClosedTopicArn);
+
+        // The current hour can still gain due tasks, so the mark never passes it
+        LocalDateTime sweptTo = to.truncatedTo(ChronoUnit.HOURS);
+        String nextMark = DeadlineBuckets.hourOf(sweptTo.isBefore(currentHour) ? sweptTo.plusHours(1) : currentHour);
+        advanceDueSweepMark(mark.hour(), nextMark);
+        savePendingHours(unsettled.stream()
+                .map(DeadlineBuckets::hourOfBucket)
+                .collect(Collectors.toCollection(TreeSet::new)));
     }
 
     private void checkTasksWithAnHourToDeadlineAndWriteToSQS() {
@@ -88,70 +177,446 @@ public class EventBridgeCheckDeadlinesHandler implements RequestHandler<Object,
         LocalDateTime currentTime = LocalDateTime.now();
         LocalDateTime oneHourFromNow = currentTime.plusHours(1);
 
-        // Query tasks nearing their deadlines
-        QueryRequest queryRequest = QueryRequest.builder()
-                .tableName(tasksTableName)
-                .indexName("statusIndex") // GSI on `deadline`
-                .keyConditionExpression("#status = :open")
-                .filterExpression("deadline > :current AND deadline <= :oneHourLater AND isNotifiedForApproachDeadline = :false")
-                .expressionAttributeValues(Map.of(
-                        ":current", AttributeValue.builder().s(currentTime.toString()).build(),
-                        ":oneHourLater", AttributeValue.builder().s(oneHourFromNow.toString()).build(),
-                        ":open", AttributeValue.builder().s("open").build(),
-                        ":false", AttributeValue.builder().n("0").build()
-                )).expressionAttributeNames(Map.of(
-                        "#status", "status"
-                ))
-                .build();
+        if (!TaskIndexRollout.deadlineBucketIndexReady(dynamoDbClient, checkpointsTableName)) {
+            sweep("approach-deadline", List.of(LEGACY_BUCKET), null, bucket -> QueryRequest.builder()
+                            .tableName(tasksTableName)
+                            .indexName("statusIndex")
+                            .keyConditionExpression("#status = :open")
+                            .filterExpression("deadline > :current AND deadline <= :oneHourLater " +
+                                    "AND isNotifiedForApproachDeadline = :false")
+                            .expressionAttributeValues(Map.of(
+                                    ":current", AttributeValue.builder().s(currentTime.toString()).build(),
+                                    ":oneHourLater", AttributeValue.builder().s(oneHourFromNow.toString()).build(),
+                                    ":open", AttributeValue.builder().s("open").build(),
+                                    ":false", AttributeValue.builder().n("0").build()
+                            )).expressionAttributeNames(Map.of(
+                                    "#status", "status"
+                            ))
+                            .build(),
+                    "task-approach-deadline", "Task Approach Deadline", taskDeadlineTopicArn);
+            return;
+        }
 
-        QueryResponse queryResponse = dynamoDbClient.query(queryRequest);
+        // Query tasks nearing their deadlines, only the current and next hour buckets can hold them
+        List<String> buckets = DeadlineBuckets.bucketsBetween(currentTime, oneHourFromNow, shardCount);
+        sweep("approach-deadline", buckets, currentTime.toString(), bucket -> QueryRequest.builder()
+                        .tableName(tasksTableName)
+                        .indexName("deadlineBucketIndex") // GSI on `deadlineBucket` and `deadline`
+                        .keyConditionExpression("#deadlineBucket = :bucket AND deadline BETWEEN :current AND :oneHourLater")
+                        .filterExpression("deadline > :current AND isNotifiedForApproachDeadline = :false")
+                        .expressionAttributeValues(Map.of(
+                                ":current", AttributeValue.builder().s(currentTime.toString()).build(),
+                                ":oneHourLater", AttributeValue.builder().s(oneHourFromNow.toString()).build(),
+                                ":bucket", AttributeValue.builder().s(bucket).build(),
+                                ":false", AttributeValue.builder().n("0").build()
+                        )).expressionAttributeNames(Map.of(
+                                "#deadlineBucket", DeadlineBuckets.ATTRIBUTE
+                        ))
+                        .build(),
+                "task-approach-deadline", "Task Approach Deadline", taskDeadlineTopicArn);
+    }
 
-        System.out.println("Info: checkTasksApproachDeadlineAndWriteToSQS");
+    // Every bucket shard is its own partition, so all of them are swept at once. Returns the buckets that are not
+    // settled, see sweepBucket.
+    // A non null deadlineFrom is the lower bound of the deadline range the query reads.
+    private Set<String> sweep(String sweepType, List<String> buckets, String deadlineFrom,
+                              Function<String, QueryRequest> queryRequest, String reason, String subject, String topicArn) {
 
+        long started = System.nanoTime();
+        SweepStats stats = new SweepStats();
 
-        if (queryResponse.hasItems()) {
-            writeToQueue(queryResponse, "A task has approach deadline",
-                    "task-approach-deadline", "Task Approach Deadline",
-                    taskDeadlineTopicArn);
+        Map<String, CompletableFuture<Boolean>> shards = new LinkedHashMap<>();
+        for (String bucket : buckets) {
+            shards.put(bucket, CompletableFuture.supplyAsync(() -> sweepBucket(sweepType + "#" + bucket,
+                    queryRequest.apply(bucket), deadlineFrom, reason, subject, topicArn, stats), executor));
         }
+        Set<String> unsettled = new LinkedHashSet<>();
+        shards.forEach((bucket, shard) -> {
+            if (!shard.join()) {
+                unsettled.add(bucket);
+            }
+        });
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        double itemsPerSecond = elapsedMillis == 0 ? 0 : stats.items.get() * 1000.0 / elapsedMillis;
+        System.out.println("Info: " + sweepType + " sweep processed " + stats.items.get() + " tasks in "
+                + elapsedMillis + " ms (" + Math.round(itemsPerSecond) + " tasks/s)"
+                + (stats.stoppedEarly.get() ? ", stopped early to stay within the timeout" : "")
+                + (stats.leasedElsewhere.get() > 0 ? ", " + stats.leasedElsewhere.get() + " shards leased by another sweep" : "")
+                + (stats.failed.get() > 0 ? ", " + stats.failed.get() + " shards failed" : ""));
+
+        MetricsLogger.emit(Map.of("Sweep", sweepType),
+                new MetricsLogger.Metric("SweepDuration", elapsedMillis, "Milliseconds"),
+                new MetricsLogger.Metric("SweepItems", stats.items.get(), "Count"),
+                new MetricsLogger.Metric("SweepItemsPerSecond", itemsPerSecond, "Count/Second"),
+                new MetricsLogger.Metric("SweepStoppedEarly", stats.stoppedEarly.get() ? 1 : 0, "Count"),
+                new MetricsLogger.Metric("SweepShardsLeasedElsewhere", stats.leasedElsewhere.get(), "Count"),
+                new MetricsLogger.Metric("SweepShardsFailed", stats.failed.get(), "Count"),
+                new MetricsLogger.Metric("SuppressedDuplicateNotifications", stats.suppressed.get(), "Count"));
+        return unsettled;
     }
 
-    private void writeToQueue(QueryResponse response, String sQsMessageBody, String reason, String subject, String topicArn) {
+    // Pages of one shard follow each other, but each page is written while the next one is read.
+    // Returns whether the shard is settled: read to the end, with every page written and no item found in it.
+    private boolean sweepBucket(String checkpointId, QueryRequest queryRequest, String deadlineFrom, String reason,
+                                String subject, String topicArn, SweepStats stats) {
+
+        Map<String, AttributeValue> lastEvaluatedKey;
+        try {
+            lastEvaluatedKey = acquireCheckpoint(checkpointId);
+        } catch (ConditionalCheckFailedException e) {
+            // Another invocation still holds the lease on this shard
+            stats.leasedElsewhere.incrementAndGet();
+            return false;
+        } catch (Exception e) {
+            System.err.println("Failed to acquire checkpoint " + checkpointId + ": " + e.getMessage());
+            stats.failed.incrementAndGet();
+            return false;
+        }
 
-        for (Map<String, AttributeValue> item : response.items()) {
+        // The range moved on since the key was saved, a key below its start is rejected by DynamoDB.
+        // Everything before the new start is out of range anyway, so the shard is read from the start.
+        if (lastEvaluatedKey != null && deadlineFrom != null && lastEvaluatedKey.get("deadline") != null
+                && lastEvaluatedKey.get("deadline").s().compareTo(deadlineFrom) < 0) {
+            lastEvaluatedKey = null;
+        }
 
-            Map<String, MessageAttributeValue> messageAttributes = SQSServiceImpl.createQueueMessage(reason, item, subject, topicArn);
+        List<PageWrites> pages = new ArrayList<>();
+        boolean complete = false;
+        boolean foundItems = false;
+        while (true) {
+            if (outOfTime()) {
+                stats.stoppedEarly.set(true);
+                break;
+            }
 
-            // Send the message to SQS with attributes
-            SendMessageRequest sendMessageRequest = SendMessageRequest.builder()
-                    .queueUrl(queueUrl)
-                    .messageBody(sQsMessageBody)
-                    .messageAttributes(messageAttributes)
+            QueryRequest pageRequest = queryRequest.toBuilder()
+                    .exclusiveStartKey(lastEvaluatedKey)
                     .build();
+            QueryResponse queryResponse;
+            try {
+                queryResponse = limited(() -> dynamoDbClient.query(pageRequest));
+            } catch (Exception e) {
+                // The pages already read are still written, the lease is released below so the next run retries
+                System.err.println("Failed to query " + checkpointId + ": " + e.getMessage());
+                stats.failed.incrementAndGet();
+                break;
+            }
+
+            foundItems |= queryResponse.hasItems() && !queryResponse.items().isEmpty();
+            pages.add(new PageWrites(lastEvaluatedKey,
+                    writeToQueue(queryResponse.items(), reason, subject, topicArn, stats)));
+            lastEvaluatedKey = queryResponse.hasLastEvaluatedKey() ? queryResponse.lastEvaluatedKey() : null;
+            if (lastEvaluatedKey == null) {
+                complete = true;
+                break;
+            }
+        }
 
-            sqsClient.sendMessage(sendMessageRequest);
+        // Resume from the first page with skipped chunks, otherwise from after the last page read
+        Map<String, AttributeValue> resumeKey = lastEvaluatedKey;
+        boolean pagesWritten = true;
+        for (PageWrites page : pages) {
+            boolean pageWritten = true;
+            for (CompletableFuture<Boolean> write : page.writes()) {
+                pageWritten &= write.join();
+            }
+            if (!pageWritten && pagesWritten) {
+                resumeKey = page.startKey();
+                pagesWritten = false;
+            }
+        }
 
-            if ("task-approach-deadline".equals(reason)) {  // To ensure tasks are only notified once when approaching their deadline
-                try {
+        if ((complete && pagesWritten) || resumeKey == null) {
+            clearCheckpoint(checkpointId);
+            return complete && pagesWritten && !foundItems;
+        }
+        saveCheckpoint(checkpointId, resumeKey);
+        return false;
+    }
 
-                    String taskId = item.get("taskId").s();
-                    UpdateItemRequest updateRequest = UpdateItemRequest.builder()
-                            .tableName(tasksTableName)
-                            .key(Map.of("taskId", AttributeValue.builder().s(taskId).build()))
-                            .updateExpression("SET isNotifiedForApproachDeadline = :true")
-                            .expressionAttributeValues(Map.of(
-                                    ":true", AttributeValue.builder().n("1").build()
-                            ))
-                            .build();
+    private DueSweepMark readDueSweepMark() {
+
+        Map<String, AttributeValue> item = limited(() -> dynamoDbClient.getItem(GetItemRequest.builder()
+                .tableName(checkpointsTableName)
+                .key(Map.of("checkpointId", AttributeValue.builder().s(DeadlineBuckets.DUE_SWEEP_MARK_ID).build()))
+                .consistentRead(true)
+                .build())).item();
+        if (item == null) {
+            return new DueSweepMark(null, List.of());
+        }
+        return new DueSweepMark(item.get("hour") == null ? null : item.get("hour").s(),
+                item.get("pendingHours") == null ? List.of() : item.get("pendingHours").ss());
+    }
+
+    // Written apart from the mark, which a backfill can move back concurrently
+    private void savePendingHours(Set<String> pendingHours) {
+
+        UpdateItemRequest.Builder updateRequest = UpdateItemRequest.builder()
+                .tableName(checkpointsTableName)
+                .key(Map.of("checkpointId", AttributeValue.builder().s(DeadlineBuckets.DUE_SWEEP_MARK_ID).build()));
+        if (pendingHours.isEmpty()) {
+            updateRequest.updateExpression("REMOVE pendingHours");
+        } else {
+            updateRequest.updateExpression("SET pendingHours = :pendingHours")
+                    .expressionAttributeValues(Map.of(
+                            ":pendingHours", AttributeValue.builder().ss(pendingHours).build()
+                    ));
+        }
+
+        try {
+            limited(() -> dynamoDbClient.updateItem(updateRequest.build()));
+        } catch (Exception e) {
+            System.err.println("Failed to save pending due sweep hours: " + e.getMessage());
+        }
+    }
+
+    // Conditioned on the mark read at the start, so a backfill that moved it back meanwhile is not overwritten
+    private void advanceDueSweepMark(String previousMark, String nextMark) {
+
+        if (nextMark.equals(previousMark)) {
+            return;
+        }
+
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":hour", AttributeValue.builder().s(nextMark).build());
+        if (previousMark != null) {
+            values.put(":previous", AttributeValue.builder().s(previousMark).build());
+        }
+
+        try {
+            limited(() -> dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(checkpointsTableName)
+                    .key(Map.of("checkpointId", AttributeValue.builder().s(DeadlineBuckets.DUE_SWEEP_MARK_ID).build()))
+                    .updateExpression("SET #hour = :hour")
+                    .conditionExpression(previousMark == null ? "attribute_not_exists(#hour)" : "#hour = :previous")
+                    .expressionAttributeValues(values)
+                    .expressionAttributeNames(Map.of(
+                            "#hour", "hour"
+                    ))
+                    .build()));
+        } catch (ConditionalCheckFailedException e) {
+            System.out.println("Due sweep mark moved by another writer, keeping it");
+        } catch (Exception e) {
+            System.err.println("Failed to advance due sweep mark: " + e.getMessage());
+        }
+    }
+
+    // Leases the shard until this invocation times out and returns where the previous sweep stopped
+    private Map<String, AttributeValue> acquireCheckpoint(String checkpointId) {
 
-                    dynamoDbClient.updateItem(updateRequest);
-                    System.out.println("Successfully updated task with ID: " + taskId + " to set isNotifiedForApproachDeadline = true");
-                } catch (Exception e) {
-                    System.err.println("Failed to update task: " + e.getMessage());
+        long now = System.currentTimeMillis();
+        UpdateItemResponse response = limited(() -> dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                .tableName(checkpointsTableName)
+                .key(Map.of("checkpointId", AttributeValue.builder().s(checkpointId).build()))
+                .updateExpression("SET #owner = :owner, leaseUntil = :leaseUntil, expiresAt = :expiresAt")
+                .conditionExpression("attribute_not_exists(leaseUntil) OR leaseUntil < :now OR #owner = :owner")
+                .expressionAttributeValues(Map.of(
+                        ":owner", AttributeValue.builder().s(invocationId).build(),
+                        ":leaseUntil", AttributeValue.builder().n(String.valueOf(stopAtMillis + timeMarginMillis)).build(),
+                        ":expiresAt", AttributeValue.builder().n(String.valueOf(now / 1000 + CHECKPOINT_TTL_SECONDS)).build(),
+                        ":now", AttributeValue.builder().n(String.valueOf(now)).build()
+                ))
+                .expressionAttributeNames(Map.of(
+                        "#owner", "owner"
+                ))
+                .returnValues(ReturnValue.ALL_NEW)
+                .build()));
+
+        AttributeValue lastKey = response.attributes().get("lastKey");
+        return lastKey == null ? null : CursorCodec.decodeKey(lastKey.s());
+    }
+
+    private void saveCheckpoint(String checkpointId, Map<String, AttributeValue> resumeKey) {
+
+        try {
+            limited(() -> dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(checkpointsTableName)
+                    .key(Map.of("checkpointId", AttributeValue.builder().s(checkpointId).build()))
+                    .updateExpression("SET lastKey = :lastKey, leaseUntil = :released")
+                    .conditionExpression("#owner = :owner")
+                    .expressionAttributeValues(Map.of(
+                            ":lastKey", AttributeValue.builder().s(CursorCodec.encodeKey(resumeKey)).build(),
+                            ":released", AttributeValue.builder().n("0").build(),
+                            ":owner", AttributeValue.builder().s(invocationId).build()
+                    ))
+                    .expressionAttributeNames(Map.of(
+                            "#owner", "owner"
+                    ))
+                    .build()));
+        } catch (Exception e) {
+            System.err.println("Failed to save checkpoint " + checkpointId + ": " + e.getMessage());
+        }
+    }
+
+    // A finished shard starts from the beginning next time
+    private void clearCheckpoint(String checkpointId) {
+
+        try {
+            limited(() -> dynamoDbClient.deleteItem(DeleteItemRequest.builder()
+                    .tableName(checkpointsTableName)
+                    .key(Map.of("checkpointId", AttributeValue.builder().s(checkpointId).build()))
+                    .conditionExpression("#owner = :owner")
+                    .expressionAttributeValues(Map.of(
+                            ":owner", AttributeValue.builder().s(invocationId).build()
+                    ))
+                    .expressionAttributeNames(Map.of(
+                            "#owner", "owner"
+                    ))
+                    .build()));
+        } catch (Exception e) {
+            System.err.println("Failed to clear checkpoint " + checkpointId + ": " + e.getMessage());
+        }
+    }
+
+    // Each future completes with false when its chunk was skipped because the invocation ran out of time or failed
+    private List<CompletableFuture<Boolean>> writeToQueue(List<Map<String, AttributeValue>> items, String reason,
+                                                          String subject, String topicArn, SweepStats stats) {
+
+        boolean approachDeadline = "task-approach-deadline".equals(reason);
+
+        // Each chunk is claimed, sent as one SendMessageBatch call and has its failed claims released, independently of the others
+        List<CompletableFuture<Boolean>> sends = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += SQS_BATCH_SIZE) {
+            List<Map<String, AttributeValue>> chunk = items.subList(from, Math.min(from + SQS_BATCH_SIZE, items.size()));
+
+            sends.add(CompletableFuture.supplyAsync(() -> {
+                if (outOfTime()) {
+                    stats.stoppedEarly.set(true);
+                    return false;
                 }
-            }
+
+                List<Map<String, AttributeValue>> claimed = approachDeadline ? claimForApproachDeadline(chunk, stats) : chunk;
+                List<Map<String, AttributeValue>> failed = sendChunk(claimed, reason, subject, topicArn);
+                if (approachDeadline) {
+                    failed.forEach(this::releaseApproachDeadlineClaim);
+                }
+                stats.items.addAndGet(claimed.size() - failed.size());
+                return true;
+            }, executor).exceptionally(e -> {
+                // Treated like a skipped chunk, so the shard resumes from this page next time
+                System.err.println("Failed to write chunk for " + reason + ": " + e.getMessage());
+                return false;
+            }));
+        }
+        return sends;
+    }
+
+    // Only the sweep that flips the flag from 0 to 1 notifies, overlapping sweeps find it already claimed
+    private List<Map<String, AttributeValue>> claimForApproachDeadline(List<Map<String, AttributeValue>> chunk, SweepStats stats) {
+
+        List<CompletableFuture<Map<String, AttributeValue>>> claims = chunk.stream()
+                .map(item -> CompletableFuture.supplyAsync(() -> claimForApproachDeadline(item, stats), executor))
+                .toList();
+
+        return claims.stream()
+                .map(CompletableFuture::join)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private Map<String, AttributeValue> claimForApproachDeadline(Map<String, AttributeValue> item, SweepStats stats) {
+
+        String taskId = item.get("taskId").s();
+        try {
+            limited(() -> dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(tasksTableName)
+                    .key(Map.of("taskId", AttributeValue.builder().s(taskId).build()))
+                    .updateExpression("SET isNotifiedForApproachDeadline = :true")
+                    .conditionExpression("isNotifiedForApproachDeadline = :false AND #status = :open")
+                    .expressionAttributeValues(Map.of(
+                            ":true", AttributeValue.builder().n("1").build(),
+                            ":false", AttributeValue.builder().n("0").build(),
+                            ":open", AttributeValue.builder().s("open").build()
+                    ))
+                    .expressionAttributeNames(Map.of(
+                            "#status", "status"
+                    ))
+                    .build()));
+            return item;
+        } catch (ConditionalCheckFailedException e) {
+            stats.suppressed.incrementAndGet();
+        } catch (Exception e) {
+            // Left unclaimed, so the next sweep tries again
+            System.err.println("Failed to claim task " + taskId + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    // Returns the items whose message could not be delivered
+    private List<Map<String, AttributeValue>> sendChunk(List<Map<String, AttributeValue>> chunk, String reason,
+                                                        String subject, String topicArn) {
+
+        if (chunk.isEmpty()) {
+            return List.of();
         }
 
+        List<SendMessageBatchRequestEntry> entries = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            TaskEvent event = TaskEventCodec.fromTaskItem(reason, chunk.get(i), subject, topicArn);
+            entries.add(SendMessageBatchRequestEntry.builder()
+                    .id(String.valueOf(i))
+                    .messageBody(TaskEventCodec.encode(event))
+                    .build());
+        }
+
+        try {
+            return limited(() -> SqsBatches.sendMessageBatch(sqsClient, queueUrl, entries)).stream()
+                    .map(entry -> chunk.get(Integer.parseInt(entry.id())))
+                    .toList();
+        } catch (Exception e) {
+            System.err.println("Failed to send " + reason + " messages: " + e.getMessage());
+            return chunk;
+        }
+    }
+
+    // Gives an undelivered reminder back to the next sweep
+    private void releaseApproachDeadlineClaim(Map<String, AttributeValue> item) {
+
+        String taskId = item.get("taskId").s();
+        try {
+            limited(() -> dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(tasksTableName)
+                    .key(Map.of("taskId", AttributeValue.builder().s(taskId).build()))
+                    .updateExpression("SET isNotifiedForApproachDeadline = :false")
+                    .conditionExpression("isNotifiedForApproachDeadline = :true")
+                    .expressionAttributeValues(Map.of(
+                            ":true", AttributeValue.builder().n("1").build(),
+                            ":false", AttributeValue.builder().n("0").build()
+                    ))
+                    .build()));
+        } catch (Exception e) {
+            System.err.println("Failed to release claim on task " + taskId + ": " + e.getMessage());
+        }
     }
 
+    // Only leaf AWS calls hold a permit, so waiting on child futures can never exhaust the limit
+    private <T> T limited(Supplier<T> call) {
+
+        inFlight.acquireUninterruptibly();
+        try {
+            return call.get();
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    private boolean outOfTime() {
+        return System.currentTimeMillis() >= stopAtMillis;
+    }
+
+    private record DueSweepMark(String hour, List<String> pendingHours) {
+    }
+
+    private record PageWrites(Map<String, AttributeValue> startKey, List<CompletableFuture<Boolean>> writes) {
+    }
+
+    private static final class SweepStats {
+
+        private final AtomicLong items = new AtomicLong();
+        private final AtomicLong suppressed = new AtomicLong();
+        private final AtomicLong leasedElsewhere = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicBoolean stoppedEarly = new AtomicBoolean();
+    }
 }
@@ -0,0 +1,185 @@
+package org.umaxcode;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.umaxcode.utils.AwsClients;
+import org.umaxcode.utils.NotificationDigests;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.sns.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sns.model.PublishRequest;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class NotificationDigestFlushHandler implements RequestHandler<Object, Void> {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final long HOUR_SECONDS = 60 * 60;
+
+    private final DynamoDbClient dynamoDbClient;
+    private final SnsClient snsClient;
+    private final String digestTableName;
+    private final int maxDigestsPerHour;
+
+    public NotificationDigestFlushHandler() {
+        dynamoDbClient = AwsClients.dynamoDb();
+        snsClient = AwsClients.sns();
+        digestTableName = System.getenv("NOTIFICATION_DIGEST_TABLE_NAME");
+        maxDigestsPerHour = Integer.parseInt(System.getenv().getOrDefault("NOTIFICATION_DIGEST_MAX_PER_HOUR", "4"));
+    }
+
+    @Override
+    public Void handleRequest(Object o, Context context) {
+
+        System.out.println("Running NotificationDigestFlushHandler");
+        long nowSeconds = Instant.now().getEpochSecond();
+
+        // The table only holds unsent digests and rate counters, so scanning it stays cheap
+        int flushed = 0;
+        int deferred = 0;
+        Map<String, AttributeValue> lastEvaluatedKey = null;
+        do {
+            ScanResponse scanResponse = dynamoDbClient.scan(ScanRequest.builder()
+                    .tableName(digestTableName)
+                    .filterExpression("windowEnd <= :now")
+                    .expressionAttributeValues(Map.of(
+                            ":now", AttributeValue.builder().n(String.valueOf(nowSeconds)).build()
+                    ))
+                    .consistentRead(true)
+                    .exclusiveStartKey(lastEvaluatedKey)
+                    .build());
+
+            for (Map<String, AttributeValue> digest : scanResponse.items()) {
+                String recipient = digest.get("recipient").s();
+                if (!NotificationDigests.reserveRateSlot(dynamoDbClient, digestTableName, recipient, maxDigestsPerHour,
+                        nowSeconds)) {
+                    deferDigest(digest.get("digestId").s(), nowSeconds);
+                    deferred++;
+                } else if (flushDigest(digest.get("digestId").s(), nowSeconds)) {
+                    flushed++;
+                }
+            }
+            lastEvaluatedKey = scanResponse.hasLastEvaluatedKey() ? scanResponse.lastEvaluatedKey() : null;
+        } while (lastEvaluatedKey != null);
+
+        System.out.println("Digests flushed: " + flushed + ", deferred by rate cap: " + deferred);
+        return null;
+    }
+
+    // Capped digests keep collecting events and go out at the start of the next hour
+    private void deferDigest(String digestId, long nowSeconds) {
+
+        long nextHour = nowSeconds - Math.floorMod(nowSeconds, HOUR_SECONDS) + HOUR_SECONDS;
+        try {
+            dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(digestTableName)
+                    .key(Map.of("digestId", AttributeValue.builder().s(digestId).build()))
+                    .updateExpression("SET windowEnd = :nextHour")
+                    .conditionExpression("attribute_exists(digestId)")
+                    .expressionAttributeValues(Map.of(
+                            ":nextHour", AttributeValue.builder().n(String.valueOf(nextHour)).build()
+                    ))
+                    .build());
+        } catch (ConditionalCheckFailedException e) {
+            System.out.println("Digest already flushed: " + digestId);
+        }
+    }
+
+    // Deleting first claims the digest, events appended afterwards start a new item
+    private boolean flushDigest(String digestId, long nowSeconds) {
+
+        DeleteItemResponse deleteResponse;
+        try {
+            deleteResponse = dynamoDbClient.deleteItem(DeleteItemRequest.builder()
+                    .tableName(digestTableName)
+                    .key(Map.of("digestId", AttributeValue.builder().s(digestId).build()))
+                    .conditionExpression("attribute_exists(digestId)")
+                    .returnValues(ReturnValue.ALL_OLD)
+                    .build());
+        } catch (ConditionalCheckFailedException e) {
+            System.out.println("Digest already flushed: " + digestId);
+            return false;
+        }
+
+        Map<String, AttributeValue> digest = deleteResponse.attributes();
+        List<String> entries = digest.get("entries").l().stream()
+                .map(AttributeValue::s)
+                .toList();
+
+        // Digests filled before the entry cap go out as several messages, each under the SNS size limit
+        int sent = 0;
+        try {
+            for (List<String> batch : NotificationDigests.batches(entries)) {
+                publishDigest(digest.get("recipient").s(), digest.get("topicArn").s(),
+                        NotificationDigests.subjectOf(digest.get("subject").s(), batch.size()),
+                        NotificationDigests.render(batch));
+                sent += batch.size();
+            }
+            return true;
+        } catch (Exception e) {
+            System.err.println("Failed to publish digest " + digestId + ": " + e.getMessage());
+            if (sent == 0) {
+                NotificationDigests.releaseRateSlot(dynamoDbClient, digestTableName, digest.get("recipient").s(),
+                        nowSeconds);
+            }
+            restoreDigest(digest, entries.subList(sent, entries.size()));
+            return false;
+        }
+    }
+
+    private void publishDigest(String recipient, String topicArn, String subject, String message) throws JsonProcessingException {
+
+        Map<String, MessageAttributeValue> messageAttributes = new HashMap<>();
+        messageAttributes.put("endpointEmail", MessageAttributeValue.builder()
+                .dataType("String.Array")
+                .stringValue(OBJECT_MAPPER.writeValueAsString(List.of(recipient)))
+                .build());
+
+        snsClient.publish(PublishRequest.builder()
+                .topicArn(topicArn)
+                .subject(subject)
+                .message(message)
+                .messageAttributes(messageAttributes)
+                .build());
+    }
+
+    // Puts the unsent entries back as a digest part of their own, so appends made since never push it over the cap
+    private void restoreDigest(Map<String, AttributeValue> digest, List<String> entries) {
+
+        Map<String, AttributeValue> item = new HashMap<>(digest);
+        item.put("entries", AttributeValue.builder()
+                .l(entries.stream().map(entry -> AttributeValue.builder().s(entry).build()).toList())
+                .build());
+        item.put("eventCount", AttributeValue.builder().n(String.valueOf(entries.size())).build());
+
+        for (int part = 0; ; part++) {
+            item.put("digestId", AttributeValue.builder()
+                    .s(NotificationDigests.digestId(digest.get("recipient").s(), digest.get("reason").s(), part))
+                    .build());
+            try {
+                dynamoDbClient.putItem(PutItemRequest.builder()
+                        .tableName(digestTableName)
+                        .item(item)
+                        .conditionExpression("attribute_not_exists(digestId)")
+                        .build());
+                return;
+            } catch (ConditionalCheckFailedException e) {
+                // Taken by events appended since the flush, try the next part
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package org.umaxcode;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import org.umaxcode.service.impl.SNSServiceImpl;
+import org.umaxcode.utils.AwsClients;
 import software.amazon.awssdk.services.sns.SnsClient;
 
 import java.util.Map;
@@ -12,7 +13,7 @@ public class SNSTopicSubscriptionHandler implements RequestHandler<Map<String, S
     private final SnsClient snsClient;
 
     public SNSTopicSubscriptionHandler() {
-        snsClient = SnsClient.create();
+        snsClient = AwsClients.sns();
     }
 
     @Override
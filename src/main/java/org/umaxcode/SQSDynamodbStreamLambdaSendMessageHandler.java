@@ -3,99 +3,233 @@ package org.umaxcode;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.DynamodbEvent;
+import com.amazonaws.services.lambda.runtime.events.StreamsEventResponse;
 import com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue;
+import org.umaxcode.domain.event.TaskEvent;
+import org.umaxcode.mapper.TaskEventCodec;
+import org.umaxcode.utils.AwsClients;
+import org.umaxcode.utils.SqsBatches;
+import org.umaxcode.utils.StatusDeadlineKeys;
+import org.umaxcode.utils.TaskCounters;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
 import software.amazon.awssdk.services.sqs.SqsClient;
-import software.amazon.awssdk.services.sqs.model.MessageAttributeValue;
-import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
-import software.amazon.awssdk.services.sqs.model.SendMessageResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-public class SQSDynamodbStreamLambdaSendMessageHandler implements RequestHandler<DynamodbEvent, String> {
+public class SQSDynamodbStreamLambdaSendMessageHandler implements RequestHandler<DynamodbEvent, StreamsEventResponse> {
+
+    private static final int SQS_BATCH_SIZE = 10;
 
     private final SqsClient sqsClient;
+    private final DynamoDbClient dynamoDbClient;
+    private final String queueUrl;
+    private final String topicArn;
+    private final String countersTableName;
+    private final String tasksTableName;
+    private final ExecutorService executor;
 
     public SQSDynamodbStreamLambdaSendMessageHandler() {
-        sqsClient = SqsClient.create();
+        sqsClient = AwsClients.sqs();
+        dynamoDbClient = AwsClients.dynamoDb();
+        queueUrl = System.getenv("QUEUE_URL");
+        topicArn = System.getenv("TASKS_ASSIGNMENT_NOTIFICATION_TOPIC_ARN");
+        countersTableName = System.getenv("TASK_COUNTERS_TABLE_NAME");
+        tasksTableName = System.getenv("TASKS_TABLE_NAME");
+        executor = Executors.newVirtualThreadPerTaskExecutor();
     }
 
     @Override
-    public String handleRequest(DynamodbEvent event, Context context) {
-
-        String queueUrl = System.getenv("QUEUE_URL");
-        String topicArn = System.getenv("TASKS_ASSIGNMENT_NOTIFICATION_TOPIC_ARN");
+    public StreamsEventResponse handleRequest(DynamodbEvent event, Context context) {
 
         System.out.println("SQS lambda function is triggered and to : " + queueUrl);
-        for (DynamodbEvent.DynamodbStreamRecord record : event.getRecords()) {
-            if ("INSERT".equals(record.getEventName())) {
-                Map<String, AttributeValue> newImage = record.getDynamodb().getNewImage();// Get the new image (data)
-
-                // Add attributes to the message
-                Map<String, MessageAttributeValue> messageAttributes = new HashMap<>();
-
-                messageAttributes.put("taskId", MessageAttributeValue.builder()
-                        .dataType("String")
-                        .stringValue(newImage.get("taskId").getS())
-                        .build());
-
-                messageAttributes.put("name", MessageAttributeValue.builder()
-                        .dataType("String")
-                        .stringValue(newImage.get("name").getS())
-                        .build());
-
-                messageAttributes.put("description", MessageAttributeValue.builder()
-                        .dataType("String")
-                        .stringValue(newImage.get("description").getS())
-                        .build());
-
-                messageAttributes.put("receiver", MessageAttributeValue.builder()
-                        .dataType("String")
-                        .stringValue(newImage.get("responsibility").getS())
-                        .build());
-
-                messageAttributes.put("assignedBy", MessageAttributeValue.builder()
-                        .dataType("String")
-                        .stringValue(newImage.get("assignedBy").getS())
-                        .build());
-
-                messageAttributes.put("deadline", MessageAttributeValue.builder()
-                        .dataType("String")
-                        .stringValue(newImage.get("deadline").getS())
-                        .build());
-
-                messageAttributes.put("topicArn", MessageAttributeValue.builder()
-                        .dataType("String")
-                        .stringValue(topicArn)
-                        .build());
-
-                messageAttributes.put("reason", MessageAttributeValue.builder()
-                        .dataType("String")
-                        .stringValue("task-creation")
-                        .build());
-
-                messageAttributes.put("messageSubject", MessageAttributeValue.builder()
-                        .dataType("String")
-                        .stringValue("New Task Assignment")
-                        .build());
-
-                // Send the message to SQS with attributes
-                SendMessageRequest sendMessageRequest = SendMessageRequest.builder()
-                        .queueUrl(queueUrl)
-                        .messageBody("A new task has been created")
-                        .messageAttributes(messageAttributes)
-                        .build();
-
-                sendMessageToQueue(sendMessageRequest);
+        List<DynamodbEvent.DynamodbStreamRecord> records = event.getRecords();
+
+        // Entry ids are the record positions, so a failed entry maps straight back to its record
+        List<SendMessageBatchRequestEntry> entries = new ArrayList<>();
+        Map<Integer, CompletableFuture<Void>> repairs = new HashMap<>();
+        TreeSet<Integer> failedRecords = new TreeSet<>();
+        for (int i = 0; i < records.size(); i++) {
+            DynamodbEvent.DynamodbStreamRecord record = records.get(i);
+            try {
+                UpdateItemRequest repair = statusDeadlineRepairOf(record.getDynamodb().getNewImage());
+                if (repair != null) {
+                    repairs.put(i, CompletableFuture.runAsync(() -> repairStatusDeadline(repair), executor));
+                }
+                TaskEvent taskEvent = switch (record.getEventName()) {
+                    case "INSERT" -> creationEventOf(record.getDynamodb().getNewImage());
+                    case "MODIFY" -> outboxEventOf(record.getDynamodb().getOldImage(), record.getDynamodb().getNewImage());
+                    default -> null;
+                };
+                if (taskEvent != null) {
+                    entries.add(SendMessageBatchRequestEntry.builder()
+                            .id(String.valueOf(i))
+                            .messageBody(TaskEventCodec.encode(taskEvent))
+                            .build());
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Failed to convert record " + record.getDynamodb().getSequenceNumber() + ": " + e.getMessage());
+                failedRecords.add(i);
             }
         }
-        return "success";
+
+        // Batches of ten are sent concurrently, each with its own retries of failed entries
+        List<CompletableFuture<List<SendMessageBatchRequestEntry>>> sends = new ArrayList<>();
+        for (int from = 0; from < entries.size(); from += SQS_BATCH_SIZE) {
+            List<SendMessageBatchRequestEntry> batch = entries.subList(from, Math.min(from + SQS_BATCH_SIZE, entries.size()));
+            sends.add(CompletableFuture.supplyAsync(() -> sendBatch(batch), executor));
+        }
+        for (CompletableFuture<List<SendMessageBatchRequestEntry>> send : sends) {
+            send.join().forEach(entry -> failedRecords.add(Integer.parseInt(entry.id())));
+        }
+        repairs.forEach((i, repair) -> {
+            try {
+                repair.join();
+            } catch (RuntimeException e) {
+                System.err.println("Failed to repair status deadline key: " + e.getMessage());
+                failedRecords.add(i);
+            }
+        });
+
+        // Lambda retries from the first failed record, so only the records before it are counted now
+        int processed = failedRecords.isEmpty() ? records.size() : failedRecords.first();
+        Map<String, Integer> recordIndexes = new HashMap<>();
+        Map<String, Map<String, Map<String, Long>>> deltasByRecord = new LinkedHashMap<>();
+        for (int i = 0; i < processed; i++) {
+            DynamodbEvent.DynamodbStreamRecord record = records.get(i);
+            Map<String, AttributeValue> oldImage = record.getDynamodb().getOldImage();
+            Map<String, AttributeValue> updatedImage = record.getDynamodb().getNewImage();
+            Map<String, Map<String, Long>> counterDeltas = new HashMap<>();
+            TaskCounters.addCounterDeltas(counterDeltas,
+                    stringOf(oldImage, "status"), stringOf(oldImage, "responsibility"), stringOf(oldImage, "assignedBy"),
+                    stringOf(updatedImage, "status"), stringOf(updatedImage, "responsibility"), stringOf(updatedImage, "assignedBy"));
+            deltasByRecord.put(record.getEventID(), counterDeltas);
+            recordIndexes.put(record.getEventID(), i);
+        }
+
+        // Each record's deltas are applied once even when a retried batch hands it in again
+        TaskCounters.applyCounterDeltas(dynamoDbClient, countersTableName, deltasByRecord)
+                .forEach(eventId -> failedRecords.add(recordIndexes.get(eventId)));
+
+        System.out.println("Stream records: " + records.size() + ", messages queued: " + entries.size() + ", failed records: " + failedRecords.size());
+        List<StreamsEventResponse.BatchItemFailure> batchItemFailures = failedRecords.stream()
+                .map(i -> StreamsEventResponse.BatchItemFailure.builder()
+                        .withItemIdentifier(records.get(i).getDynamodb().getSequenceNumber())
+                        .build())
+                .toList();
+        return StreamsEventResponse.builder()
+                .withBatchItemFailures(batchItemFailures)
+                .build();
+    }
+
+    private List<SendMessageBatchRequestEntry> sendBatch(List<SendMessageBatchRequestEntry> batch) {
+
+        try {
+            return SqsBatches.sendMessageBatch(sqsClient, queueUrl, batch);
+        } catch (Exception e) {
+            System.err.println("Failed to send message batch: " + e.getMessage());
+            return batch;
+        }
+    }
+
+    // Status writes carry the key themselves, this only repairs those that could not, such as expiries of queued
+    // messages without a deadline or a workflow expiry racing a reopen
+    private UpdateItemRequest statusDeadlineRepairOf(Map<String, AttributeValue> newImage) {
+
+        String status = stringOf(newImage, "status");
+        String deadline = stringOf(newImage, "deadline");
+        if (status == null || deadline == null) {
+            return null;
+        }
+
+        String statusDeadline = StatusDeadlineKeys.keyOf(status, deadline);
+        if (statusDeadline.equals(stringOf(newImage, StatusDeadlineKeys.ATTRIBUTE))) {
+            return null;
+        }
+
+        return UpdateItemRequest.builder()
+                .tableName(tasksTableName)
+                .key(Map.of("taskId", tableString(newImage.get("taskId").getS())))
+                .updateExpression("SET #statusDeadline = :statusDeadline")
+                .conditionExpression("#status = :status AND deadline = :deadline")
+                .expressionAttributeValues(Map.of(
+                        ":statusDeadline", tableString(statusDeadline),
+                        ":status", tableString(status),
+                        ":deadline", tableString(deadline)
+                ))
+                .expressionAttributeNames(Map.of(
+                        "#statusDeadline", StatusDeadlineKeys.ATTRIBUTE,
+                        "#status", "status"
+                ))
+                .build();
+    }
+
+    private void repairStatusDeadline(UpdateItemRequest repair) {
+
+        try {
+            dynamoDbClient.updateItem(repair);
+        } catch (ConditionalCheckFailedException e) {
+            // The task changed again, its newer stream record carries the repair
+        }
+    }
+
+    private TaskEvent creationEventOf(Map<String, AttributeValue> newImage) {
+
+        return new TaskEvent(TaskEvent.CURRENT_VERSION, "task-creation",
+                newImage.get("taskId").getS(),
+                newImage.get("name").getS(),
+                newImage.get("description").getS(),
+                newImage.get("deadline").getS(),
+                newImage.get("responsibility").getS(),
+                newImage.get("assignedBy").getS(),
+                topicArn, "New Task Assignment");
+    }
+
+    // Updates that notify write their event into the item's outbox, a new event id marks one not relayed yet
+    private TaskEvent outboxEventOf(Map<String, AttributeValue> oldImage, Map<String, AttributeValue> newImage) {
+
+        AttributeValue outbox = newImage == null ? null : newImage.get(TaskEventCodec.OUTBOX_ATTRIBUTE);
+        if (outbox == null || outbox.getM() == null) {
+            return null;
+        }
+
+        AttributeValue previous = oldImage == null ? null : oldImage.get(TaskEventCodec.OUTBOX_ATTRIBUTE);
+        Map<String, AttributeValue> event = outbox.getM();
+        if (previous != null && previous.getM() != null
+                && event.get("eventId").getS().equals(previous.getM().get("eventId").getS())) {
+            return null;
+        }
+
+        return new TaskEvent(TaskEvent.CURRENT_VERSION, event.get("reason").getS(),
+                newImage.get("taskId").getS(),
+                newImage.get("name").getS(),
+                newImage.get("description").getS(),
+                newImage.get("deadline").getS(),
+                newImage.get("responsibility").getS(),
+                newImage.get("assignedBy").getS(),
+                event.get("topicArn").getS(), event.get("subject").getS());
+    }
+
+    // Stream images and table requests use different AttributeValue classes
+    private static software.amazon.awssdk.services.dynamodb.model.AttributeValue tableString(String value) {
+        return software.amazon.awssdk.services.dynamodb.model.AttributeValue.builder().s(value).build();
     }
 
-    private void sendMessageToQueue(SendMessageRequest sendMessageRequest) {
+    private static String stringOf(Map<String, AttributeValue> image, String attribute) {
 
-        SendMessageResponse sendMessageResponse = sqsClient.sendMessage(sendMessageRequest);
-        System.out.println(sendMessageResponse);
-        System.out.println("Message sent to SQS: " + sendMessageResponse.messageId());
+        if (image == null || image.get(attribute) == null) {
+            return null;
+        }
+        return image.get(attribute).getS();
     }
 }
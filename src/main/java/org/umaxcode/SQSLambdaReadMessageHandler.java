@@ -2,60 +2,270 @@ package org.umaxcode;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
 import com.amazonaws.services.lambda.runtime.events.SQSEvent;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.umaxcode.domain.event.TaskEvent;
+import org.umaxcode.exception.TaskManagementException;
+import org.umaxcode.mapper.TaskEventCodec;
+import org.umaxcode.utils.AwsClients;
+import org.umaxcode.utils.MetricsLogger;
+import org.umaxcode.utils.NotificationDigests;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
 import software.amazon.awssdk.services.sfn.SfnClient;
 import software.amazon.awssdk.services.sfn.model.StartExecutionRequest;
 import software.amazon.awssdk.services.sns.SnsClient;
 import software.amazon.awssdk.services.sns.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequestEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
 import software.amazon.awssdk.services.sns.model.PublishRequest;
 import software.amazon.awssdk.services.sns.model.PublishResponse;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
 
-public class SQSLambdaReadMessageHandler implements RequestHandler<SQSEvent, Void> {
+public class SQSLambdaReadMessageHandler implements RequestHandler<SQSEvent, SQSBatchResponse> {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final int SNS_BATCH_SIZE = 10;
 
     private final SnsClient snsClient;
     private final SfnClient stepFunctionsClient;
+    private final DynamoDbClient dynamoDbClient;
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+    private final boolean digestEnabled;
+    private final Set<String> digestReasons;
+    private final String digestTableName;
+    private final boolean inlineExpiry;
+    private final String tasksTableName;
 
     public SQSLambdaReadMessageHandler() {
-        this.snsClient = SnsClient.create();
-        this.stepFunctionsClient = SfnClient.create();
+        this.snsClient = AwsClients.sns();
+        this.stepFunctionsClient = AwsClients.sfn();
+        this.digestEnabled = NotificationDigests.enabled();
+        this.digestReasons = NotificationDigests.reasons();
+        this.digestTableName = System.getenv("NOTIFICATION_DIGEST_TABLE_NAME");
+        this.tasksTableName = System.getenv("TASKS_TABLE_NAME");
+
+        // "workflow" starts the state machine per expired task, "inline" expires and notifies from here
+        this.inlineExpiry = "inline".equals(System.getenv().getOrDefault("DEADLINE_EXPIRY_MODE", "workflow"));
+        this.dynamoDbClient = digestEnabled || inlineExpiry ? AwsClients.dynamoDb() : null;
+
+        // One virtual thread per message, the semaphore caps the SNS and Step Functions calls in flight
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.inFlight = new Semaphore(Integer.parseInt(System.getenv().getOrDefault("SQS_CONSUMER_MAX_IN_FLIGHT", "10")));
     }
 
     @Override
-    public Void handleRequest(SQSEvent event, Context context) {
+    public SQSBatchResponse handleRequest(SQSEvent event, Context context) {
+
+        // Only the failed messages go back to the queue, the rest of the batch is deleted
+        List<SQSBatchResponse.BatchItemFailure> batchItemFailures = new ArrayList<>();
+
+        Map<String, CompletableFuture<Void>> processing = new LinkedHashMap<>();
+        List<QueuedEvent> expiries = new ArrayList<>();
         for (SQSEvent.SQSMessage message : event.getRecords()) {
-            // Process each message
-            String messageReason = message.getMessageAttributes().get("reason").getStringValue();
-
-            String taskId = message.getMessageAttributes().get("taskId").getStringValue();
-            String receiver = message.getMessageAttributes().get("receiver").getStringValue();
-            String assignedBy = message.getMessageAttributes().get("assignedBy").getStringValue();
-            String name = message.getMessageAttributes().get("name").getStringValue();
-            String description = message.getMessageAttributes().get("description").getStringValue();
-            String deadline = message.getMessageAttributes().get("deadline").getStringValue();
-            String topicArn = message.getMessageAttributes().get("topicArn").getStringValue();
-            String subject = message.getMessageAttributes().get("messageSubject").getStringValue();
+            TaskEvent taskEvent;
+            try {
+                taskEvent = eventOf(message);
+            } catch (TaskManagementException e) {
+                System.err.println("Failed to read message " + message.getMessageId() + ": " + e.getMessage());
+                batchItemFailures.add(new SQSBatchResponse.BatchItemFailure(message.getMessageId()));
+                continue;
+            }
+
+            if (inlineExpiry && "task-hit-deadline".equals(taskEvent.reason()) && taskEvent.topicArn() != null) {
+                expiries.add(new QueuedEvent(message.getMessageId(), taskEvent));
+            } else {
+                processing.put(message.getMessageId(),
+                        CompletableFuture.runAsync(() -> processMessage(message.getMessageId(), taskEvent), executor));
+            }
+        }
+        CompletableFuture<List<String>> expiring = CompletableFuture.supplyAsync(() -> expireTasks(expiries), executor);
+
+        processing.forEach((messageId, future) -> {
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                System.err.println("Failed to process message " + messageId + ": " + e.getCause().getMessage());
+                batchItemFailures.add(new SQSBatchResponse.BatchItemFailure(messageId));
+            }
+        });
+        expiring.join().forEach(messageId -> batchItemFailures.add(new SQSBatchResponse.BatchItemFailure(messageId)));
+
+        System.out.println("Processed messages: " + event.getRecords().size() + ", failed: " + batchItemFailures.size());
+        return new SQSBatchResponse(batchItemFailures);
+    }
+
+    private void processMessage(String messageId, TaskEvent event) {
+
+        String messageReason = event.reason();
 
+        String taskId = event.taskId();
+        String receiver = event.receiver();
+        String assignedBy = event.assignedBy();
+        String name = event.name();
+        String description = event.description();
+        String deadline = event.deadline();
+        String topicArn = event.topicArn();
+        String subject = event.subject();
+
+        inFlight.acquireUninterruptibly();
+        try {
             if ("task-hit-deadline".equals(messageReason)) {
                 System.out.println("Sending task deadline notification");
-                try {
-                    triggerStepFunction(taskId, topicArn, name, description, receiver, subject, deadline, assignedBy);
-                } catch (JsonProcessingException e) {
-                    e.printStackTrace();
-                }
-                break;
+                triggerStepFunction(taskId, topicArn, name, description, receiver, subject, deadline, assignedBy);
+            } else if (digestEnabled && digestReasons.contains(messageReason)) {
+                bufferTaskNotification(messageId, messageReason, receiver, assignedBy, name, description,
+                        deadline, topicArn, subject);
+            } else {
+                sendTaskNotification(receiver, assignedBy, name, description, deadline,
+                        topicArn, subject);
             }
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    // Expired tasks of the whole batch are claimed, then notified with PublishBatch per topic, returning failed message ids
+    private List<String> expireTasks(List<QueuedEvent> messages) {
 
-            sendTaskNotification(receiver, assignedBy, name, description, deadline,
-                    topicArn, subject);
+        if (messages.isEmpty()) {
+            return List.of();
         }
-        return null;
+
+        long started = System.nanoTime();
+        Map<String, List<QueuedEvent>> byTopic = messages.stream()
+                .collect(Collectors.groupingBy(message -> message.event().topicArn(), LinkedHashMap::new, Collectors.toList()));
+
+        List<CompletableFuture<List<String>>> chunks = new ArrayList<>();
+        byTopic.forEach((topicArn, topicMessages) -> {
+            for (int from = 0; from < topicMessages.size(); from += SNS_BATCH_SIZE) {
+                List<QueuedEvent> chunk = topicMessages.subList(from, Math.min(from + SNS_BATCH_SIZE, topicMessages.size()));
+                chunks.add(CompletableFuture.supplyAsync(() -> expireChunk(topicArn, chunk), executor));
+            }
+        });
+
+        List<String> failed = new ArrayList<>();
+        chunks.forEach(chunk -> failed.addAll(chunk.join()));
+
+        double elapsedMillis = (System.nanoTime() - started) / 1_000_000.0;
+        MetricsLogger.emit(Map.of("ExpiryMode", "inline"),
+                new MetricsLogger.Metric("ExpiryBatchDuration", elapsedMillis, "Milliseconds"),
+                new MetricsLogger.Metric("ExpiredTasks", messages.size() - failed.size(), "Count"),
+                new MetricsLogger.Metric("ExpiryFailures", failed.size(), "Count"));
+        return failed;
+    }
+
+    // Claiming first means a task completed or expired in the meantime is left alone and not notified
+    private List<String> expireChunk(String topicArn, List<QueuedEvent> chunk) {
+
+        List<CompletableFuture<Boolean>> claims = chunk.stream()
+                .map(message -> CompletableFuture.supplyAsync(() -> claimExpiry(message), executor)
+                        .exceptionally(e -> {
+                            System.err.println("Failed to expire task " + message.event().taskId() + ": " + e.getMessage());
+                            return null;
+                        }))
+                .toList();
+
+        List<String> failed = new ArrayList<>();
+        List<PublishBatchRequestEntry> entries = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            QueuedEvent message = chunk.get(i);
+            Boolean claimed = claims.get(i).join();
+            if (claimed == null) {
+                failed.add(message.messageId());
+                continue;
+            }
+            if (!claimed) {
+                continue;
+            }
+
+            TaskEvent event = message.event();
+            try {
+                entries.add(PublishBatchRequestEntry.builder()
+                        .id(message.messageId())
+                        .subject(event.subject())
+                        .message(SendTaskDeadlineNotificationLambdaHandler.messageContent(event.taskId(), event.name(),
+                                event.description(), event.deadline(), event.receiver(), event.assignedBy()))
+                        .messageAttributes(SendTaskDeadlineNotificationLambdaHandler.recipientAttributes(
+                                event.receiver(), event.assignedBy()))
+                        .build());
+            } catch (JsonProcessingException e) {
+                failed.add(message.messageId());
+            }
+        }
+        if (entries.isEmpty()) {
+            return failed;
+        }
+
+        // A failed notification returns its message to the queue, the redelivery claims the task again and retries it
+        inFlight.acquireUninterruptibly();
+        try {
+            PublishBatchResponse publishResponse = snsClient.publishBatch(PublishBatchRequest.builder()
+                    .topicArn(topicArn)
+                    .publishBatchRequestEntries(entries)
+                    .build());
+            publishResponse.failed().forEach(error -> failed.add(error.id()));
+        } catch (Exception e) {
+            System.err.println("Failed to publish expiry notifications: " + e.getMessage());
+            entries.forEach(entry -> failed.add(entry.id()));
+        } finally {
+            inFlight.release();
+        }
+        return failed;
+    }
+
+    private boolean claimExpiry(QueuedEvent message) {
+
+        String taskId = message.event().taskId();
+        inFlight.acquireUninterruptibly();
+        try {
+            dynamoDbClient.updateItem(TaskStatusUpdateLambdaHandler.claimExpiryRequest(tasksTableName, taskId,
+                    message.messageId(), message.event().deadline()));
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            System.out.println("Task no longer open or its deadline moved, not expiring: " + taskId);
+            return false;
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    // Messages queued before the event envelope existed are read from their attributes
+    private static TaskEvent eventOf(SQSEvent.SQSMessage message) {
+
+        if (TaskEventCodec.isEncoded(message.getBody())) {
+            return TaskEventCodec.decode(message.getBody());
+        }
+
+        Map<String, String> attributes = new HashMap<>();
+        if (message.getMessageAttributes() != null) {
+            message.getMessageAttributes().forEach((name, attribute) -> attributes.put(name, attribute.getStringValue()));
+        }
+        return TaskEventCodec.fromLegacyAttributes(attributes);
+    }
+
+    private record QueuedEvent(String messageId, TaskEvent event) {
     }
 
     private void sendTaskNotification(String receiver, String assignedBy, String name, String description,
@@ -67,10 +277,9 @@ public class SQSLambdaReadMessageHandler implements RequestHandler<SQSEvent, Voi
         listOfRecipients.add(receiver);
         listOfRecipients.add(assignedBy);
 
-        ObjectMapper objectMapper = new ObjectMapper();
         String jsonList;
         try {
-            jsonList = objectMapper.writeValueAsString(listOfRecipients);
+            jsonList = OBJECT_MAPPER.writeValueAsString(listOfRecipients);
         } catch (JsonProcessingException e) {
             throw new RuntimeException(e);
         }
@@ -92,13 +301,22 @@ public class SQSLambdaReadMessageHandler implements RequestHandler<SQSEvent, Voi
                 .messageAttributes(messageAttributes)
                 .build();
 
-        // Publish the message
-        try {
-            PublishResponse publishResponse = snsClient.publish(publishRequest);
-            System.out.println(publishResponse);
-        } catch (Exception e) {
-            e.printStackTrace();
+        // Publish the message, a failure is reported back so only this message is retried
+        PublishResponse publishResponse = snsClient.publish(publishRequest);
+        System.out.println("Notification published: " + publishResponse.messageId());
+    }
+
+    // Each recipient gets the event in their own digest, flushed as one message when the window closes
+    private void bufferTaskNotification(String messageId, String reason, String receiver, String assignedBy, String name,
+                                        String description, String deadline, String topicArn, String title) {
+
+        String entry = NotificationDigests.entryOf(name, description, deadline, receiver, assignedBy);
+        long nowSeconds = Instant.now().getEpochSecond();
+        for (String recipient : new LinkedHashSet<>(List.of(receiver, assignedBy))) {
+            NotificationDigests.append(dynamoDbClient, digestTableName, recipient, reason, topicArn, title,
+                    messageId, entry, nowSeconds);
         }
+        System.out.println("Notification buffered for digest: " + messageId);
     }
 
     private void triggerStepFunction(String taskId, String topicArn, String name, String description,
@@ -114,9 +332,7 @@ public class SQSLambdaReadMessageHandler implements RequestHandler<SQSEvent, Voi
         jsonMap.put("taskDeadline", deadline);
         jsonMap.put("snsSubject", snsSubject);
 
-        ObjectMapper objectMapper = new ObjectMapper();
-
-        String jsonString = objectMapper.writeValueAsString(jsonMap);
+        String jsonString = OBJECT_MAPPER.writeValueAsString(jsonMap);
 
         String stepFunctionArn = System.getenv("STEP_FUNCTION_ARN");
         StartExecutionRequest startExecutionRequest = StartExecutionRequest.builder()
@@ -0,0 +1,145 @@
+package org.umaxcode;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import org.umaxcode.search.TaskSearchDeltas;
+import org.umaxcode.search.TaskSearchSnapshot;
+import org.umaxcode.search.TaskSearchSnapshotWriter;
+import org.umaxcode.search.Tokenizer;
+import org.umaxcode.utils.AwsClients;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+// Rebuilds the task search snapshot from the table, for tasks older than the search stream and to drop any drift.
+// Deltas written while it scans are applied on top of it, a compaction racing the final upload is not, so it is best
+// run when writes are quiet.
+public class SearchIndexRebuildHandler implements RequestHandler<Object, Void> {
+
+    private final DynamoDbClient dynamoDbClient;
+    private final S3Client s3Client;
+    private final String tasksTableName;
+    private final String bucket;
+    private final String key;
+    private final int scanSegments;
+    private final ExecutorService executor;
+
+    public SearchIndexRebuildHandler() {
+        dynamoDbClient = AwsClients.dynamoDb();
+        s3Client = AwsClients.s3();
+        tasksTableName = System.getenv("TASKS_TABLE_NAME");
+        bucket = System.getenv("SEARCH_INDEX_BUCKET");
+        key = System.getenv().getOrDefault("SEARCH_INDEX_KEY", "tasks-search.idx");
+        scanSegments = Integer.parseInt(System.getenv().getOrDefault("SEARCH_REBUILD_SCAN_SEGMENTS", "8"));
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @Override
+    public Void handleRequest(Object o, Context context) {
+
+        System.out.println("Running SearchIndexRebuildHandler");
+
+        // Everything up to this delta is read back by the scan, later ones are left for readers to apply
+        long startSequence = latestSequence();
+
+        List<CompletableFuture<Map<String, Map<String, Integer>>>> segments = IntStream.range(0, scanSegments)
+                .mapToObj(segment -> CompletableFuture.supplyAsync(() -> indexSegment(segment), executor))
+                .toList();
+        Map<String, Map<String, Integer>> tasks = new HashMap<>();
+        for (CompletableFuture<Map<String, Map<String, Integer>>> segment : segments) {
+            tasks.putAll(segment.join());
+        }
+
+        // Compactions during the scan may have deleted deltas this snapshot does not hold
+        NavigableMap<Long, String> deltas = TaskSearchDeltas.list(s3Client, bucket, key);
+        boolean intact = deltas.isEmpty() ? baseSequence() <= startSequence : deltas.firstKey() <= startSequence + 1;
+        if (!intact) {
+            throw new IllegalStateException("Task search snapshot was compacted during the rebuild, run it again");
+        }
+
+        Path target = Path.of(System.getProperty("java.io.tmpdir"), "tasks-search-" + UUID.randomUUID() + ".idx");
+        try {
+            TaskSearchSnapshotWriter.merge(TaskSearchSnapshot.empty(), tasks, target);
+            s3Client.putObject(PutObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .metadata(Map.of(TaskSearchDeltas.SEQUENCE_METADATA, String.valueOf(startSequence)))
+                    .build(), RequestBody.fromFile(target));
+            Files.deleteIfExists(target);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        System.out.println("Task search snapshot rebuilt: " + tasks.size() + " tasks through delta " + startSequence);
+        return null;
+    }
+
+    private Map<String, Map<String, Integer>> indexSegment(int segment) {
+
+        Map<String, Map<String, Integer>> tasks = new HashMap<>();
+        Map<String, AttributeValue> lastEvaluatedKey = null;
+        do {
+            ScanResponse scanResponse = dynamoDbClient.scan(ScanRequest.builder()
+                    .tableName(tasksTableName)
+                    .projectionExpression("taskId, #name, description, #comment")
+                    .expressionAttributeNames(Map.of(
+                            "#name", "name",
+                            "#comment", "comment"
+                    ))
+                    .segment(segment)
+                    .totalSegments(scanSegments)
+                    .exclusiveStartKey(lastEvaluatedKey)
+                    .build());
+
+            for (Map<String, AttributeValue> item : scanResponse.items()) {
+                tasks.put(item.get("taskId").s(), Tokenizer.termFrequencies(
+                        stringOf(item, "name"), stringOf(item, "description"), stringOf(item, "comment")));
+            }
+            lastEvaluatedKey = scanResponse.hasLastEvaluatedKey() ? scanResponse.lastEvaluatedKey() : null;
+        } while (lastEvaluatedKey != null);
+
+        return tasks;
+    }
+
+    private long latestSequence() {
+
+        NavigableMap<Long, String> deltas = TaskSearchDeltas.list(s3Client, bucket, key);
+        return Math.max(baseSequence(), deltas.isEmpty() ? 0 : deltas.lastKey());
+    }
+
+    private long baseSequence() {
+
+        try {
+            return TaskSearchDeltas.sequenceOf(s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .build()).metadata());
+        } catch (NoSuchKeyException e) {
+            return 0;
+        }
+    }
+
+    private static String stringOf(Map<String, AttributeValue> item, String attribute) {
+        return item.get(attribute) == null ? null : item.get(attribute).s();
+    }
+}
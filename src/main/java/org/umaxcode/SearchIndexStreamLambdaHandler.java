@@ -0,0 +1,174 @@
+package org.umaxcode;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.DynamodbEvent;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue;
+import org.umaxcode.search.TaskSearchDeltas;
+import org.umaxcode.search.TaskSearchSnapshot;
+import org.umaxcode.search.TaskSearchSnapshotWriter;
+import org.umaxcode.search.Tokenizer;
+import org.umaxcode.utils.AwsClients;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.UUID;
+
+public class SearchIndexStreamLambdaHandler implements RequestHandler<DynamodbEvent, String> {
+
+    private final S3Client s3Client;
+    private final String bucket;
+    private final String key;
+    private final int compactEvery;
+
+    // Kept across warm invocations, the function runs with a reserved concurrency of one
+    private TaskSearchSnapshot snapshot = TaskSearchSnapshot.empty();
+    private String snapshotETag;
+    private Path snapshotFile;
+
+    public SearchIndexStreamLambdaHandler() {
+        this.s3Client = AwsClients.s3();
+        this.bucket = System.getenv("SEARCH_INDEX_BUCKET");
+        this.key = System.getenv().getOrDefault("SEARCH_INDEX_KEY", "tasks-search.idx");
+        this.compactEvery = Integer.parseInt(System.getenv().getOrDefault("SEARCH_INDEX_COMPACT_EVERY", "20"));
+    }
+
+    @Override
+    public String handleRequest(DynamodbEvent event, Context context) {
+
+        // Later records of the same task overwrite earlier ones, an empty map removes the task
+        Map<String, Map<String, Integer>> changes = new LinkedHashMap<>();
+        for (DynamodbEvent.DynamodbStreamRecord record : event.getRecords()) {
+            String taskId = record.getDynamodb().getKeys().get("taskId").getS();
+            Map<String, AttributeValue> oldImage = record.getDynamodb().getOldImage();
+            Map<String, AttributeValue> newImage = record.getDynamodb().getNewImage();
+
+            if ("REMOVE".equals(record.getEventName()) || newImage == null) {
+                changes.put(taskId, Map.of());
+            } else if (!"MODIFY".equals(record.getEventName()) || textChanged(oldImage, newImage)) {
+                changes.put(taskId, Tokenizer.termFrequencies(
+                        stringOf(newImage, "name"), stringOf(newImage, "description"), stringOf(newImage, "comment")));
+            }
+        }
+
+        // Status and assignment changes do not touch the searchable text
+        if (changes.isEmpty()) {
+            return "success";
+        }
+
+        try {
+            HeadObjectResponse base = headSnapshot();
+            long baseSequence = base == null ? 0 : TaskSearchDeltas.sequenceOf(base.metadata());
+            NavigableMap<Long, String> deltas = TaskSearchDeltas.list(s3Client, bucket, key);
+
+            // Each batch only writes its own changes, readers apply them on top of the compacted snapshot
+            long sequence = Math.max(baseSequence, deltas.isEmpty() ? 0 : deltas.lastKey()) + 1;
+            TaskSearchDeltas.write(s3Client, bucket, key, sequence, changes);
+            System.out.println("Task search delta " + sequence + " written with " + changes.size() + " changed tasks");
+
+            if (deltas.tailMap(baseSequence, false).size() + 1 >= compactEvery) {
+                compact(base, baseSequence, sequence, deltas);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return "success";
+    }
+
+    // Folds the pending deltas into a new snapshot. Deltas the previous snapshot already held are only deleted now,
+    // so a reader that fetched that snapshot just before this one replaced it can still list what came after it.
+    private void compact(HeadObjectResponse base, long baseSequence, long sequence,
+                         NavigableMap<Long, String> deltas) throws IOException {
+
+        refreshSnapshot(base);
+
+        List<String> pending = new ArrayList<>(deltas.subMap(baseSequence, false, sequence, true).values());
+        pending.add(TaskSearchDeltas.keyOf(key, sequence));
+        Map<String, Map<String, Integer>> changes = TaskSearchDeltas.read(s3Client, bucket, pending);
+
+        Path target = Path.of(System.getProperty("java.io.tmpdir"), "tasks-search-" + UUID.randomUUID() + ".idx");
+        TaskSearchSnapshotWriter.merge(snapshot, changes, target);
+
+        PutObjectResponse response = s3Client.putObject(PutObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .metadata(Map.of(TaskSearchDeltas.SEQUENCE_METADATA, String.valueOf(sequence)))
+                .build(), RequestBody.fromFile(target));
+        replaceSnapshot(TaskSearchSnapshot.open(target), response.eTag(), target);
+
+        TaskSearchDeltas.delete(s3Client, bucket, deltas.headMap(baseSequence, true).values());
+        System.out.println("Task search snapshot compacted through delta " + sequence);
+    }
+
+    private HeadObjectResponse headSnapshot() {
+
+        try {
+            return s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .build());
+        } catch (NoSuchKeyException e) {
+            return null;
+        }
+    }
+
+    // Only downloads when the published snapshot is not the one this container wrote last
+    private void refreshSnapshot(HeadObjectResponse base) throws IOException {
+
+        if (base == null || base.eTag().equals(snapshotETag)) {
+            return;
+        }
+
+        Path file = Path.of(System.getProperty("java.io.tmpdir"), "tasks-search-" + UUID.randomUUID() + ".idx");
+        GetObjectResponse response = s3Client.getObject(GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .build(), ResponseTransformer.toFile(file));
+        replaceSnapshot(TaskSearchSnapshot.open(file), response.eTag(), file);
+    }
+
+    private void replaceSnapshot(TaskSearchSnapshot newSnapshot, String eTag, Path file) throws IOException {
+
+        Path previousFile = snapshotFile;
+        snapshot = newSnapshot;
+        snapshotETag = eTag;
+        snapshotFile = file;
+        if (previousFile != null) {
+            Files.deleteIfExists(previousFile);
+        }
+    }
+
+    private static boolean textChanged(Map<String, AttributeValue> oldImage, Map<String, AttributeValue> newImage) {
+
+        return oldImage == null
+                || !Objects.equals(stringOf(oldImage, "name"), stringOf(newImage, "name"))
+                || !Objects.equals(stringOf(oldImage, "description"), stringOf(newImage, "description"))
+                || !Objects.equals(stringOf(oldImage, "comment"), stringOf(newImage, "comment"));
+    }
+
+    private static String stringOf(Map<String, AttributeValue> image, String attribute) {
+
+        if (image == null || image.get(attribute) == null) {
+            return null;
+        }
+        return image.get(attribute).getS();
+    }
+}
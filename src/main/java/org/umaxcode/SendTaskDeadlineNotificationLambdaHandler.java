@@ -2,7 +2,9 @@ package org.umaxcode;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.umaxcode.utils.AwsClients;
 import software.amazon.awssdk.services.sns.SnsClient;
 import software.amazon.awssdk.services.sns.model.MessageAttributeValue;
 import software.amazon.awssdk.services.sns.model.PublishRequest;
@@ -15,10 +17,12 @@ import java.util.Map;
 
 public class SendTaskDeadlineNotificationLambdaHandler implements RequestHandler<Map<String, String>, Void> {
 
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
     private final SnsClient snsClient;
 
     public SendTaskDeadlineNotificationLambdaHandler() {
-        this.snsClient = SnsClient.create();
+        this.snsClient = AwsClients.sns();
     }
 
     @Override
@@ -33,24 +37,10 @@ public class SendTaskDeadlineNotificationLambdaHandler implements RequestHandler
         String taskDeadline = event.get("taskDeadline");
         String snsSubject = event.get("snsSubject");
 
-        // Create message attributes sns filtering
-        List<String> listOfRecipients = new ArrayList<>();
-        listOfRecipients.add(receiver);
-        listOfRecipients.add(assignedBy);
-
         try {
 
-            ObjectMapper objectMapper = new ObjectMapper();
-            String jsonList = objectMapper.writeValueAsString(listOfRecipients);
-
-            Map<String, MessageAttributeValue> messageAttributes = new HashMap<>();
-            messageAttributes.put("endpointEmail", MessageAttributeValue.builder()
-                    .dataType("String.Array")
-                    .stringValue(jsonList)
-                    .build());
-
-            String messageContent = String.format("Id: %s\nName: %s\nDescription: %s\nDeadline: %s\nAssigned to: %s\nAssigned by: %s",
-                    taskId, taskName, taskDescription, taskDeadline, receiver, assignedBy);
+            Map<String, MessageAttributeValue> messageAttributes = recipientAttributes(receiver, assignedBy);
+            String messageContent = messageContent(taskId, taskName, taskDescription, taskDeadline, receiver, assignedBy);
 
             PublishRequest publishRequest = PublishRequest.builder()
                     .topicArn(topicArn)
@@ -67,4 +57,27 @@ public class SendTaskDeadlineNotificationLambdaHandler implements RequestHandler
         }
         return null;
     }
+
+    // Create message attributes sns filtering
+    public static Map<String, MessageAttributeValue> recipientAttributes(String receiver, String assignedBy)
+            throws JsonProcessingException {
+
+        List<String> listOfRecipients = new ArrayList<>();
+        listOfRecipients.add(receiver);
+        listOfRecipients.add(assignedBy);
+
+        Map<String, MessageAttributeValue> messageAttributes = new HashMap<>();
+        messageAttributes.put("endpointEmail", MessageAttributeValue.builder()
+                .dataType("String.Array")
+                .stringValue(OBJECT_MAPPER.writeValueAsString(listOfRecipients))
+                .build());
+        return messageAttributes;
+    }
+
+    public static String messageContent(String taskId, String taskName, String taskDescription, String taskDeadline,
+                                        String receiver, String assignedBy) {
+
+        return String.format("Id: %s\nName: %s\nDescription: %s\nDeadline: %s\nAssigned to: %s\nAssigned by: %s",
+                taskId, taskName, taskDescription, taskDeadline, receiver, assignedBy);
+    }
 }
@@ -0,0 +1,87 @@
+package org.umaxcode;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import org.umaxcode.utils.AwsClients;
+import org.umaxcode.utils.TaskCounters;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+// Recounts the task counters from the table, for tasks older than the counters and to correct any drift.
+// Writes made while it scans can be off by their own delta until the next run, so it is best run when writes are quiet.
+public class TaskCountersRebuildHandler implements RequestHandler<Object, Void> {
+
+    private final DynamoDbClient dynamoDbClient;
+    private final String tasksTableName;
+    private final String countersTableName;
+    private final int scanSegments;
+    private final ExecutorService executor;
+
+    public TaskCountersRebuildHandler() {
+        dynamoDbClient = AwsClients.dynamoDb();
+        tasksTableName = System.getenv("TASKS_TABLE_NAME");
+        countersTableName = System.getenv("TASK_COUNTERS_TABLE_NAME");
+        scanSegments = Integer.parseInt(System.getenv().getOrDefault("COUNTERS_REBUILD_SCAN_SEGMENTS", "8"));
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @Override
+    public Void handleRequest(Object o, Context context) {
+
+        System.out.println("Running TaskCountersRebuildHandler");
+        List<CompletableFuture<Map<String, Map<String, Long>>>> segments = IntStream.range(0, scanSegments)
+                .mapToObj(segment -> CompletableFuture.supplyAsync(() -> countSegment(segment), executor))
+                .toList();
+
+        Map<String, Map<String, Long>> counts = new HashMap<>();
+        for (CompletableFuture<Map<String, Map<String, Long>>> segment : segments) {
+            segment.join().forEach((counterId, statusCounts) -> statusCounts.forEach((status, count) ->
+                    counts.computeIfAbsent(counterId, id -> new HashMap<>()).merge(status, count, Long::sum)));
+        }
+
+        TaskCounters.replaceCounters(dynamoDbClient, countersTableName, counts);
+        System.out.println("Task counters rebuilt: " + counts.size());
+        return null;
+    }
+
+    private Map<String, Map<String, Long>> countSegment(int segment) {
+
+        Map<String, Map<String, Long>> counts = new HashMap<>();
+        Map<String, AttributeValue> lastEvaluatedKey = null;
+        do {
+            ScanResponse scanResponse = dynamoDbClient.scan(ScanRequest.builder()
+                    .tableName(tasksTableName)
+                    .projectionExpression("#status, responsibility, assignedBy")
+                    .expressionAttributeNames(Map.of(
+                            "#status", "status"
+                    ))
+                    .segment(segment)
+                    .totalSegments(scanSegments)
+                    .exclusiveStartKey(lastEvaluatedKey)
+                    .build());
+
+            // Counted as if every task had just been inserted
+            for (Map<String, AttributeValue> item : scanResponse.items()) {
+                TaskCounters.addCounterDeltas(counts, null, null, null,
+                        stringOf(item, "status"), stringOf(item, "responsibility"), stringOf(item, "assignedBy"));
+            }
+            lastEvaluatedKey = scanResponse.hasLastEvaluatedKey() ? scanResponse.lastEvaluatedKey() : null;
+        } while (lastEvaluatedKey != null);
+
+        return counts;
+    }
+
+    private static String stringOf(Map<String, AttributeValue> item, String attribute) {
+        return item.get(attribute) == null ? null : item.get(attribute).s();
+    }
+}
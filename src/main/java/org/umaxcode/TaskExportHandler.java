@@ -0,0 +1,114 @@
+package org.umaxcode;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.umaxcode.domain.dto.response.TaskDto;
+import org.umaxcode.export.S3MultipartOutputStream;
+import org.umaxcode.export.TaskExports;
+import org.umaxcode.mapper.TaskMapper;
+import org.umaxcode.utils.AwsClients;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+// Started asynchronously by POST /tasks/export, writes every task as one JSON line to the export bucket.
+// Runs outside the API so neither the API Gateway timeout nor its 6 MB response cap limit the table size.
+public class TaskExportHandler implements RequestHandler<Map<String, String>, Void> {
+
+    private static final ObjectWriter TASK_WRITER = new ObjectMapper().writerFor(TaskDto.class);
+    private static final int EXPORT_PAGE_SIZE = 250;
+
+    private final DynamoDbClient dynamoDbClient;
+    private final S3Client s3Client;
+    private final String tasksTableName;
+    private final String exportBucket;
+    private final int scanSegments;
+    private final ExecutorService executor;
+
+    public TaskExportHandler() {
+        dynamoDbClient = AwsClients.dynamoDb();
+        s3Client = AwsClients.s3();
+        tasksTableName = System.getenv("TASKS_TABLE_NAME");
+        exportBucket = System.getenv("TASK_EXPORT_BUCKET");
+        scanSegments = Integer.parseInt(System.getenv().getOrDefault("TASK_EXPORT_SCAN_SEGMENTS", "8"));
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @Override
+    public Void handleRequest(Map<String, String> input, Context context) {
+
+        String exportId = input.get("exportId");
+        boolean gzip = Boolean.parseBoolean(input.get("gzip"));
+        System.out.println("Running TaskExportHandler for export " + exportId);
+
+        S3MultipartOutputStream upload = new S3MultipartOutputStream(s3Client, exportBucket,
+                TaskExports.keyOf(exportId), TaskExports.CONTENT_TYPE, gzip ? "gzip" : null);
+        try {
+            OutputStream outputStream = gzip ? new GZIPOutputStream(upload, 64 * 1024) : upload;
+
+            // Each segment holds one page at a time, and pages are appended whole so lines never interleave
+            List<CompletableFuture<Void>> segments = IntStream.range(0, scanSegments)
+                    .mapToObj(segment -> CompletableFuture.runAsync(() -> exportSegment(segment, outputStream), executor))
+                    .toList();
+            CompletableFuture.allOf(segments.toArray(CompletableFuture[]::new)).join();
+
+            outputStream.close();
+        } catch (Exception e) {
+            System.err.println("Task export " + exportId + " failed: " + e.getMessage());
+            upload.abort();
+            s3Client.putObject(PutObjectRequest.builder()
+                            .bucket(exportBucket)
+                            .key(TaskExports.failureKeyOf(exportId))
+                            .build(),
+                    RequestBody.fromString(String.valueOf(e.getMessage())));
+        }
+        return null;
+    }
+
+    private void exportSegment(int segment, OutputStream outputStream) {
+
+        Map<String, AttributeValue> startKey = null;
+        do {
+            ScanResponse scanResponse = dynamoDbClient.scan(ScanRequest.builder()
+                    .tableName(tasksTableName)
+                    .segment(segment)
+                    .totalSegments(scanSegments)
+                    .limit(EXPORT_PAGE_SIZE)
+                    .exclusiveStartKey(startKey)
+                    .build());
+
+            ByteArrayOutputStream lines = new ByteArrayOutputStream();
+            try {
+                for (TaskDto task : TaskMapper.mapToListTaskDto(scanResponse.items())) {
+                    lines.write(TASK_WRITER.writeValueAsBytes(task));
+                    lines.write('\n');
+                }
+                synchronized (outputStream) {
+                    lines.writeTo(outputStream);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            startKey = scanResponse.hasLastEvaluatedKey() ? scanResponse.lastEvaluatedKey() : null;
+        } while (startKey != null);
+    }
+}
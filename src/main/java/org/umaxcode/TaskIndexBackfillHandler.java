@@ -0,0 +1,190 @@
+package org.umaxcode;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import org.umaxcode.utils.AwsClients;
+import org.umaxcode.utils.CursorCodec;
+import org.umaxcode.utils.DeadlineBuckets;
+import org.umaxcode.utils.StatusDeadlineKeys;
+import org.umaxcode.utils.TaskIndexRollout;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Keys tasks written before the derived index keys, which are not in those indexes yet, and gives open tasks without a
+// deadline bucket one so the due sweep sees them. Runs on a schedule, resuming from the cursor it saves, until the whole
+// table is done. Readers keep to the base indexes until then, see TaskIndexRollout.
+public class TaskIndexBackfillHandler implements RequestHandler<Map<String, String>, Map<String, String>> {
+
+    private final DynamoDbClient dynamoDbClient;
+    private final String tasksTableName;
+    private final String checkpointsTableName;
+    private final int deadlineShardCount;
+    private final long timeMarginMillis;
+    private final ExecutorService executor;
+
+    public TaskIndexBackfillHandler() {
+        dynamoDbClient = AwsClients.dynamoDb();
+        tasksTableName = System.getenv("TASKS_TABLE_NAME");
+        checkpointsTableName = System.getenv("SWEEP_CHECKPOINTS_TABLE_NAME");
+        deadlineShardCount = DeadlineBuckets.shardCount();
+        timeMarginMillis = Long.parseLong(System.getenv().getOrDefault("BACKFILL_TIME_MARGIN_MS", "10000"));
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    // Returns a cursor while the table is not fully scanned. A cursor passed in overrides the saved one.
+    @Override
+    public Map<String, String> handleRequest(Map<String, String> input, Context context) {
+
+        long stopAtMillis = System.currentTimeMillis() + context.getRemainingTimeInMillis() - timeMarginMillis;
+        String cursor = input == null ? null : input.get("cursor");
+        if (cursor == null) {
+            Map<String, AttributeValue> checkpoint = readCheckpoint();
+            if (checkpoint.get("completedAt") != null) {
+                System.out.println("Task index backfill already completed");
+                Map<String, String> output = new HashMap<>();
+                output.put("updated", "0");
+                output.put("cursor", null);
+                return output;
+            }
+            cursor = checkpoint.get("cursor") == null ? null : checkpoint.get("cursor").s();
+        }
+        Map<String, AttributeValue> startKey = cursor == null ? null : CursorCodec.decodeKey(cursor);
+        AtomicLong updated = new AtomicLong();
+
+        do {
+            ScanResponse scanResponse = dynamoDbClient.scan(ScanRequest.builder()
+                    .tableName(tasksTableName)
+                    .filterExpression("attribute_not_exists(#statusDeadline) " +
+                            "OR (#status = :open AND attribute_not_exists(#deadlineBucket))")
+                    .projectionExpression("taskId, #status, deadline, #statusDeadline, #deadlineBucket")
+                    .expressionAttributeValues(Map.of(
+                            ":open", AttributeValue.builder().s("open").build()
+                    ))
+                    .expressionAttributeNames(Map.of(
+                            "#statusDeadline", StatusDeadlineKeys.ATTRIBUTE,
+                            "#deadlineBucket", DeadlineBuckets.ATTRIBUTE,
+                            "#status", "status"
+                    ))
+                    .exclusiveStartKey(startKey)
+                    .build());
+
+            List<CompletableFuture<Void>> updates = scanResponse.items().stream()
+                    .map(item -> CompletableFuture.runAsync(() -> backfill(item, updated), executor))
+                    .toList();
+            CompletableFuture.allOf(updates.toArray(CompletableFuture[]::new)).join();
+
+            startKey = scanResponse.hasLastEvaluatedKey() ? scanResponse.lastEvaluatedKey() : null;
+            saveCheckpoint(startKey);
+        } while (startKey != null && System.currentTimeMillis() < stopAtMillis);
+
+        System.out.println("Backfilled tasks: " + updated.get() + (startKey != null ? ", more to go" : ", table done"));
+        Map<String, String> output = new HashMap<>();
+        output.put("updated", String.valueOf(updated.get()));
+        output.put("cursor", startKey == null ? null : CursorCodec.encodeKey(startKey));
+        return output;
+    }
+
+    private Map<String, AttributeValue> readCheckpoint() {
+
+        Map<String, AttributeValue> item = dynamoDbClient.getItem(GetItemRequest.builder()
+                .tableName(checkpointsTableName)
+                .key(Map.of("checkpointId", AttributeValue.builder().s(TaskIndexRollout.BACKFILL_CHECKPOINT_ID).build()))
+                .consistentRead(true)
+                .build()).item();
+        return item == null ? Map.of() : item;
+    }
+
+    // Saved after every page, so a failed or timed out run loses at most one page of progress
+    private void saveCheckpoint(Map<String, AttributeValue> nextKey) {
+
+        UpdateItemRequest.Builder updateRequest = UpdateItemRequest.builder()
+                .tableName(checkpointsTableName)
+                .key(Map.of("checkpointId", AttributeValue.builder().s(TaskIndexRollout.BACKFILL_CHECKPOINT_ID).build()));
+        if (nextKey == null) {
+            updateRequest.updateExpression("SET completedAt = :completedAt REMOVE #cursor")
+                    .expressionAttributeValues(Map.of(
+                            ":completedAt", AttributeValue.builder().n(String.valueOf(Instant.now().getEpochSecond())).build()
+                    ));
+        } else {
+            updateRequest.updateExpression("SET #cursor = :cursor")
+                    .expressionAttributeValues(Map.of(
+                            ":cursor", AttributeValue.builder().s(CursorCodec.encodeKey(nextKey)).build()
+                    ));
+        }
+        dynamoDbClient.updateItem(updateRequest
+                .expressionAttributeNames(Map.of(
+                        "#cursor", "cursor"
+                ))
+                .build());
+    }
+
+    private void backfill(Map<String, AttributeValue> item, AtomicLong updated) {
+
+        if (item.get("status") == null || item.get("deadline") == null) {
+            return;
+        }
+
+        String taskId = item.get("taskId").s();
+        String status = item.get("status").s();
+        String deadline = item.get("deadline").s();
+
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":statusDeadline", AttributeValue.builder().s(StatusDeadlineKeys.keyOf(status, deadline)).build());
+        values.put(":status", AttributeValue.builder().s(status).build());
+        values.put(":deadline", AttributeValue.builder().s(deadline).build());
+        Map<String, String> names = new HashMap<>();
+        names.put("#statusDeadline", StatusDeadlineKeys.ATTRIBUTE);
+        names.put("#status", "status");
+        String updateExpression = "SET #statusDeadline = :statusDeadline";
+
+        // An overdue open task goes in the current hour bucket, so the due sweep picks it up on its next run
+        String bucketHour = null;
+        if ("open".equals(status) && item.get(DeadlineBuckets.ATTRIBUTE) == null) {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime bucketTime = LocalDateTime.parse(deadline);
+            if (bucketTime.isBefore(now)) {
+                bucketTime = now;
+            }
+            bucketHour = DeadlineBuckets.hourOf(bucketTime);
+            values.put(":deadlineBucket", AttributeValue.builder()
+                    .s(DeadlineBuckets.bucketOf(taskId, bucketTime, deadlineShardCount)).build());
+            names.put("#deadlineBucket", DeadlineBuckets.ATTRIBUTE);
+            updateExpression += ", #deadlineBucket = :deadlineBucket";
+        }
+
+        try {
+            // Conditioned on the values read, a task changed in the meantime is keyed by its own writer
+            dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(tasksTableName)
+                    .key(Map.of("taskId", item.get("taskId")))
+                    .updateExpression(updateExpression)
+                    .conditionExpression("#status = :status AND deadline = :deadline")
+                    .expressionAttributeValues(values)
+                    .expressionAttributeNames(names)
+                    .build());
+            updated.incrementAndGet();
+        } catch (ConditionalCheckFailedException e) {
+            System.out.println("Task changed during backfill: " + taskId);
+            return;
+        }
+
+        if (bucketHour != null) {
+            DeadlineBuckets.lowerDueSweepMark(dynamoDbClient, checkpointsTableName, bucketHour);
+        }
+    }
+}
@@ -2,10 +2,14 @@ package org.umaxcode;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
+import org.umaxcode.utils.AwsClients;
+import org.umaxcode.utils.DeadlineBuckets;
+import org.umaxcode.utils.StatusDeadlineKeys;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
 
+import java.util.HashMap;
 import java.util.Map;
 
 public class TaskStatusUpdateLambdaHandler implements RequestHandler<Map<String, String>, Void> {
@@ -14,32 +18,86 @@ public class TaskStatusUpdateLambdaHandler implements RequestHandler<Map<String,
     private final String tasksTableName;
 
     public TaskStatusUpdateLambdaHandler() {
-        this.dynamoDbClient = DynamoDbClient.create();
+        this.dynamoDbClient = AwsClients.dynamoDb();
         this.tasksTableName = System.getenv("TASKS_TABLE_NAME");
     }
 
     @Override
     public Void handleRequest(Map<String, String> event, Context context) {
 
+        // Create the UpdateItemRequest
+        UpdateItemRequest updateItemRequest = expireTaskRequest(tasksTableName, event.get("taskId"),
+                event.get("taskDeadline"));
+
+        // Execute the update
+        dynamoDbClient.updateItem(updateItemRequest);
+        return null;
+    }
+
+    // The status/deadline key is written with the status when the deadline is known, the table stream still repairs
+    // it should a reopen have moved the deadline since the expiry was scheduled
+    public static UpdateItemRequest expireTaskRequest(String tasksTableName, String taskId, String deadline) {
+
         // Define the primary key
         Map<String, AttributeValue> key = Map.of(
-                "taskId", AttributeValue.builder().s(event.get("taskId")).build()
+                "taskId", AttributeValue.builder().s(taskId).build()
         );
 
-        // Create the UpdateItemRequest
-        UpdateItemRequest updateItemRequest = UpdateItemRequest.builder()
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":status", AttributeValue.builder().s("expired").build());
+        values.put(":one", AttributeValue.builder().n("1").build());
+        Map<String, String> names = new HashMap<>();
+        names.put("#status", "status");
+        names.put("#deadlineBucket", DeadlineBuckets.ATTRIBUTE);
+        names.put("#version", "version");
+        String set = "SET #status = :status";
+        if (deadline != null) {
+            values.put(":statusDeadline", AttributeValue.builder().s(StatusDeadlineKeys.keyOf("expired", deadline)).build());
+            names.put("#statusDeadline", StatusDeadlineKeys.ATTRIBUTE);
+            set += ", #statusDeadline = :statusDeadline";
+        }
+
+        return UpdateItemRequest.builder()
                 .tableName(tasksTableName)
                 .key(key)
-                .updateExpression("SET #status = :status")
-                .expressionAttributeValues(Map.of(
-                        ":status", AttributeValue.builder().s("expired").build()
-                )).expressionAttributeNames(Map.of(
-                        "#status", "status"
-                ))
+                .updateExpression(set + " REMOVE #deadlineBucket ADD #version :one")
+                .expressionAttributeValues(values)
+                .expressionAttributeNames(names)
                 .build();
+    }
 
-        // Execute the update
-        dynamoDbClient.updateItem(updateItemRequest);
-        return null;
+    // Expires the task only while it is still open and still has the deadline the expiry was queued for, so the
+    // status/deadline key can be written in the same update. The claim id is kept on the item, so a redelivery of the
+    // same message claims it again and its notification is retried, while any other expiry or a completion wins.
+    public static UpdateItemRequest claimExpiryRequest(String tasksTableName, String taskId, String claimId,
+                                                       String deadline) {
+
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":status", AttributeValue.builder().s("expired").build());
+        values.put(":open", AttributeValue.builder().s("open").build());
+        values.put(":claimId", AttributeValue.builder().s(claimId).build());
+        values.put(":one", AttributeValue.builder().n("1").build());
+        Map<String, String> names = new HashMap<>();
+        names.put("#status", "status");
+        names.put("#deadlineBucket", DeadlineBuckets.ATTRIBUTE);
+        names.put("#version", "version");
+        String set = "SET #status = :status, expiryClaim = :claimId";
+        String condition = "attribute_exists(taskId) AND (#status = :open OR expiryClaim = :claimId)";
+        if (deadline != null) {
+            values.put(":deadline", AttributeValue.builder().s(deadline).build());
+            values.put(":statusDeadline", AttributeValue.builder().s(StatusDeadlineKeys.keyOf("expired", deadline)).build());
+            names.put("#statusDeadline", StatusDeadlineKeys.ATTRIBUTE);
+            set += ", #statusDeadline = :statusDeadline";
+            condition += " AND deadline = :deadline";
+        }
+
+        return UpdateItemRequest.builder()
+                .tableName(tasksTableName)
+                .key(Map.of("taskId", AttributeValue.builder().s(taskId).build()))
+                .updateExpression(set + " REMOVE #deadlineBucket ADD #version :one")
+                .conditionExpression(condition)
+                .expressionAttributeValues(values)
+                .expressionAttributeNames(names)
+                .build();
     }
 }
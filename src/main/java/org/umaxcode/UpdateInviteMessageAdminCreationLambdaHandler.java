@@ -11,6 +11,7 @@ import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
 import org.apache.hc.core5.http.io.entity.StringEntity;
 import org.umaxcode.domain.enums.Role;
+import org.umaxcode.utils.AwsClients;
 import org.umaxcode.utils.PasswordGenerator;
 import software.amazon.awssdk.services.cognitoidentityprovider.CognitoIdentityProviderClient;
 import software.amazon.awssdk.services.cognitoidentityprovider.model.*;
@@ -34,8 +35,8 @@ public class UpdateInviteMessageAdminCreationLambdaHandler implements RequestHan
     private final ExecutorService executor;
 
     public UpdateInviteMessageAdminCreationLambdaHandler() {
-        this.cognitoIdentityProviderClient = CognitoIdentityProviderClient.create();
-        this.snsClient = SnsClient.create();
+        this.cognitoIdentityProviderClient = AwsClients.cognito();
+        this.snsClient = AwsClients.sns();
         this.executor = Executors.newFixedThreadPool(2);
     }
 
@@ -0,0 +1,96 @@
+package org.umaxcode.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.umaxcode.domain.dto.response.CacheStatsDto;
+import org.umaxcode.domain.dto.response.TaskDto;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+@Component
+public class TaskReadCache {
+
+    private final int maxSize;
+    private final long ttlSeconds;
+    private final long ttlNanos;
+    private final Map<String, CachedTask> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public TaskReadCache(@Value("${application.tasks.cache.max-size}") int maxSize,
+                         @Value("${application.tasks.cache.ttl-seconds}") long ttlSeconds) {
+        this.maxSize = maxSize;
+        this.ttlSeconds = ttlSeconds;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+
+        // Access ordered, so the least recently read task is dropped first
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedTask> eldest) {
+                if (size() > TaskReadCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public synchronized TaskDto get(String taskId) {
+
+        CachedTask entry = entries.get(taskId);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+
+        // Writes from other containers are only seen once the entry ages out
+        if (System.nanoTime() - entry.cachedAt() > ttlNanos) {
+            entries.remove(taskId);
+            expirations.increment();
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        return entry.task();
+    }
+
+    public synchronized void put(String taskId, TaskDto task) {
+
+        if (maxSize > 0 && ttlNanos > 0) {
+            entries.put(taskId, new CachedTask(task, System.nanoTime()));
+        }
+    }
+
+    public synchronized void invalidate(String taskId) {
+
+        if (entries.remove(taskId) != null) {
+            invalidations.increment();
+        }
+    }
+
+    public synchronized CacheStatsDto stats() {
+
+        return CacheStatsDto.builder()
+                .size(entries.size())
+                .maxSize(maxSize)
+                .ttlSeconds(ttlSeconds)
+                .hits(hits.sum())
+                .misses(misses.sum())
+                .evictions(evictions.sum())
+                .expirations(expirations.sum())
+                .invalidations(invalidations.sum())
+                .build();
+    }
+
+    private record CachedTask(TaskDto task, long cachedAt) {
+    }
+}
@@ -3,59 +3,141 @@ package org.umaxcode.config;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.cognitoidentityprovider.CognitoIdentityProviderClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.lambda.LambdaClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 import software.amazon.awssdk.services.sns.SnsClient;
-import software.amazon.awssdk.services.sqs.SqsClient;
 import software.amazon.awssdk.services.sfn.SfnClient;
 
+import java.time.Duration;
+
 @Configuration
 public class AWSConfig {
 
     @Value("${application.aws.region}")
     private String awsRegion;
 
+    @Value("${application.aws.sync.api-call-timeout-ms}")
+    private long syncApiCallTimeoutMillis;
+
+    // Shared by the sync clients, a slow or stalled call fails within the Lambda timeout instead of hanging the request
+    @Bean(destroyMethod = "close")
+    public SdkHttpClient syncHttpClient(@Value("${application.aws.sync.max-connections}") int maxConnections,
+                                        @Value("${application.aws.sync.connection-timeout-ms}") long connectionTimeoutMillis,
+                                        @Value("${application.aws.sync.acquire-timeout-ms}") long acquireTimeoutMillis,
+                                        @Value("${application.aws.sync.socket-timeout-ms}") long socketTimeoutMillis) {
+        return ApacheHttpClient.builder()
+                .maxConnections(maxConnections)
+                .connectionTimeout(Duration.ofMillis(connectionTimeoutMillis))
+                .connectionAcquisitionTimeout(Duration.ofMillis(acquireTimeoutMillis))
+                .socketTimeout(Duration.ofMillis(socketTimeoutMillis))
+                .tcpKeepAlive(true)
+                .build();
+    }
+
     @Bean
-    public CognitoIdentityProviderClient cognitoClient() {
+    public CognitoIdentityProviderClient cognitoClient(SdkHttpClient syncHttpClient) {
         return CognitoIdentityProviderClient.builder()
                 .region(Region.of(awsRegion)) // Replace YOUR_REGION
+                .httpClient(syncHttpClient)
+                .overrideConfiguration(syncOverrideConfiguration())
                 .build();
     }
 
     @Bean
-    public SnsClient snsClient() {
+    public SnsClient snsClient(SdkHttpClient syncHttpClient) {
         return SnsClient.builder()
                 .region(Region.of(awsRegion)) // Set your region
+                .httpClient(syncHttpClient)
+                .overrideConfiguration(syncOverrideConfiguration())
                 .build();
     }
 
     @Bean
-    public LambdaClient lambdaClient() {
+    public LambdaClient lambdaClient(SdkHttpClient syncHttpClient) {
         return LambdaClient.builder()
                 .region(Region.of(awsRegion))
+                .httpClient(syncHttpClient)
+                .overrideConfiguration(syncOverrideConfiguration())
                 .build();
     }
 
     @Bean
-    public SfnClient sfnClient() {
+    public SfnClient sfnClient(SdkHttpClient syncHttpClient) {
         return SfnClient.builder()
                 .region(Region.of(awsRegion))
+                .httpClient(syncHttpClient)
+                .overrideConfiguration(syncOverrideConfiguration())
                 .build();
     }
 
     @Bean
-    public DynamoDbClient dynamoDbClient() {
+    public DynamoDbClient dynamoDbClient(SdkHttpClient syncHttpClient) {
         return DynamoDbClient.builder()
                 .region(Region.of(awsRegion))
+                .httpClient(syncHttpClient)
+                .overrideConfiguration(syncOverrideConfiguration())
+                .build();
+    }
+
+    // Shared by the async clients, so every fan-out path draws from one bounded connection pool
+    @Bean(destroyMethod = "close")
+    public SdkAsyncHttpClient asyncHttpClient(@Value("${application.aws.async.max-concurrency}") int maxConcurrency,
+                                              @Value("${application.aws.async.max-pending-acquires}") int maxPendingAcquires,
+                                              @Value("${application.aws.async.connection-timeout-ms}") long connectionTimeoutMillis,
+                                              @Value("${application.aws.async.acquire-timeout-ms}") long acquireTimeoutMillis,
+                                              @Value("${application.aws.async.read-timeout-ms}") long readTimeoutMillis) {
+        return NettyNioAsyncHttpClient.builder()
+                .maxConcurrency(maxConcurrency)
+                .maxPendingConnectionAcquires(maxPendingAcquires)
+                .connectionTimeout(Duration.ofMillis(connectionTimeoutMillis))
+                .connectionAcquisitionTimeout(Duration.ofMillis(acquireTimeoutMillis))
+                .readTimeout(Duration.ofMillis(readTimeoutMillis))
+                .writeTimeout(Duration.ofMillis(readTimeoutMillis))
+                .tcpKeepAlive(true)
                 .build();
     }
 
     @Bean
-    public SqsClient sqsClient() {
-        return SqsClient.builder()
-                .region(Region.of(awsRegion)) // Replace with your AWS region
+    public DynamoDbAsyncClient dynamoDbAsyncClient(SdkAsyncHttpClient asyncHttpClient,
+                                                   @Value("${application.aws.async.api-call-timeout-ms}") long apiCallTimeoutMillis) {
+        return DynamoDbAsyncClient.builder()
+                .region(Region.of(awsRegion))
+                .httpClient(asyncHttpClient)
+                .overrideConfiguration(ClientOverrideConfiguration.builder()
+                        .apiCallTimeout(Duration.ofMillis(apiCallTimeoutMillis))
+                        .build())
+                .build();
+    }
+
+    @Bean
+    public S3Client s3Client(SdkHttpClient syncHttpClient) {
+        return S3Client.builder()
+                .region(Region.of(awsRegion))
+                .httpClient(syncHttpClient)
+                .overrideConfiguration(syncOverrideConfiguration())
+                .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public S3Presigner s3Presigner() {
+        return S3Presigner.builder()
+                .region(Region.of(awsRegion))
+                .build();
+    }
+
+    private ClientOverrideConfiguration syncOverrideConfiguration() {
+        return ClientOverrideConfiguration.builder()
+                .apiCallTimeout(Duration.ofMillis(syncApiCallTimeoutMillis))
                 .build();
     }
 }
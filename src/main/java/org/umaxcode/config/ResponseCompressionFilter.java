@@ -0,0 +1,125 @@
+package org.umaxcode.config;
+
+import com.amazonaws.serverless.proxy.RequestReader;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ResponseCompressionFilter extends OncePerRequestFilter {
+
+    private static final Set<String> COMPRESSIBLE_TYPES = Set.of(
+            "application/json", "application/cbor", "application/problem+json", "text/plain"
+    );
+
+    private final int minSize;
+
+    public ResponseCompressionFilter(@Value("${application.compression.min-size}") int minSize) {
+        this.minSize = minSize;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+
+        // The export endpoint streams and handles its own gzip option. Behind API Gateway only CBOR is a binary media
+        // type, so a gzipped JSON body would reach the client as base64 text, and the API compresses responses itself
+        return !acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))
+                || request.getRequestURI().endsWith("/tasks/export")
+                || request.getAttribute(RequestReader.API_GATEWAY_CONTEXT_PROPERTY) != null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        filterChain.doFilter(request, wrapper);
+
+        if (!isCompressible(wrapper)) {
+            wrapper.copyBodyToResponse();
+            return;
+        }
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(wrapper.getContentSize() / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(wrapper.getContentAsByteArray());
+        }
+
+        // Gzip output is not valid UTF-8, so the Lambda proxy returns it base64 encoded
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        if (!varies(response, HttpHeaders.ACCEPT_ENCODING)) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        response.setContentLength(compressed.size());
+        response.getOutputStream().write(compressed.toByteArray());
+    }
+
+    private boolean isCompressible(ContentCachingResponseWrapper wrapper) {
+
+        if (wrapper.getContentSize() < minSize || wrapper.getHeader(HttpHeaders.CONTENT_ENCODING) != null) {
+            return false;
+        }
+
+        String contentType = wrapper.getContentType();
+        if (contentType == null) {
+            return false;
+        }
+
+        int parameters = contentType.indexOf(';');
+        String mediaType = (parameters < 0 ? contentType : contentType.substring(0, parameters)).trim().toLowerCase();
+        return COMPRESSIBLE_TYPES.contains(mediaType);
+    }
+
+    private static boolean varies(HttpServletResponse response, String requestHeader) {
+
+        for (String vary : response.getHeaders(HttpHeaders.VARY)) {
+            for (String header : vary.split(",")) {
+                if (header.trim().equalsIgnoreCase(requestHeader) || header.trim().equals("*")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (!parts[0].trim().equalsIgnoreCase("gzip") && !parts[0].trim().equals("*")) {
+                continue;
+            }
+
+            // gzip;q=0 means the client explicitly refuses it
+            boolean refused = false;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim().replace(" ", "");
+                if (parameter.matches("q=0(\\.0*)?")) {
+                    refused = true;
+                }
+            }
+            if (!refused) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -2,15 +2,25 @@ package org.umaxcode.controller;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
+import org.umaxcode.cache.TaskReadCache;
 import org.umaxcode.domain.dto.request.*;
+import org.umaxcode.domain.dto.response.BulkItemResultDto;
 import org.umaxcode.domain.dto.response.SuccessResponse;
+import org.umaxcode.domain.dto.response.TaskBatchDto;
 import org.umaxcode.domain.dto.response.TaskDto;
+import org.umaxcode.domain.dto.response.TaskPageDto;
+import org.umaxcode.service.TaskExportService;
 import org.umaxcode.service.TaskManagementService;
+import org.umaxcode.service.TaskSearchService;
+import org.umaxcode.service.TaskSummaryService;
+import org.umaxcode.utils.TaskETags;
 
 import java.util.List;
 
@@ -20,6 +30,10 @@ import java.util.List;
 public class TaskManagementController {
 
     private final TaskManagementService taskManagementService;
+    private final TaskReadCache taskReadCache;
+    private final TaskSummaryService taskSummaryService;
+    private final TaskSearchService taskSearchService;
+    private final TaskExportService taskExportService;
 
     @PostMapping
     @PreAuthorize(value = "hasRole('ADMIN')")
@@ -34,30 +48,66 @@ public class TaskManagementController {
                 .build();
     }
 
-    @GetMapping("/{id}")
+    @PostMapping("/bulk")
     @PreAuthorize(value = "hasRole('ADMIN')")
     @ResponseStatus(HttpStatus.OK)
-    public SuccessResponse retrieveTask(@PathVariable("id") String taskId) {
+    public SuccessResponse createTasks(@Valid @RequestBody TasksBulkCreationDto request, @AuthenticationPrincipal Jwt jwt) {
 
-        TaskDto taskDto = taskManagementService.fetchTask(taskId);
+        String adminEmail = jwt.getClaimAsString("email");
+        List<BulkItemResultDto> results = taskManagementService.createAndAssignTasks(request.tasks(), adminEmail);
         return SuccessResponse.builder()
-                .message("Task retrieved successfully")
-                .data(taskDto)
+                .message("Bulk task creation processed")
+                .data(results)
                 .build();
     }
 
-    @GetMapping("/users/{email}")
-    @PreAuthorize(value = "hasAnyRole('ADMIN', 'USER')")
+    // A matching If-None-Match is answered with 304 before the body is serialized
+    @GetMapping("/{id}")
+    @PreAuthorize(value = "hasRole('ADMIN')")
+    public ResponseEntity<SuccessResponse> retrieveTask(@PathVariable("id") String taskId,
+                                                        @RequestParam(required = false) String fields) {
+
+        TaskDto taskDto = taskManagementService.fetchTask(taskId, fields);
+        return ResponseEntity.ok()
+                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+                .eTag(TaskETags.forTask(taskDto, fields))
+                .body(SuccessResponse.builder()
+                        .message("Task retrieved successfully")
+                        .data(taskDto)
+                        .build());
+    }
+
+    @PostMapping("/batch-get")
+    @PreAuthorize(value = "hasRole('ADMIN')")
     @ResponseStatus(HttpStatus.OK)
-    public SuccessResponse retrieveUserTasks(@PathVariable String email) {
+    public SuccessResponse batchGetTasks(@Valid @RequestBody TaskBatchGetDto request) {
 
-        List<TaskDto> usersTasks = taskManagementService.getUsersTasks(email);
+        TaskBatchDto tasks = taskManagementService.batchGetTasks(request.ids());
         return SuccessResponse.builder()
                 .message("Tasks retrieved successfully")
-                .data(usersTasks)
+                .data(tasks)
                 .build();
     }
 
+    @GetMapping("/users/{email}")
+    @PreAuthorize(value = "hasAnyRole('ADMIN', 'USER')")
+    public ResponseEntity<SuccessResponse> retrieveUserTasks(@PathVariable String email,
+                                             @RequestParam(defaultValue = "50") int limit,
+                                             @RequestParam(required = false) String cursor,
+                                             @RequestParam(required = false) String status,
+                                             @RequestParam(required = false) String order,
+                                             @RequestParam(required = false) String fields) {
+
+        TaskPageDto usersTasks = taskManagementService.getUsersTasks(email, limit, cursor, status, order, fields);
+        return ResponseEntity.ok()
+                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+                .eTag(TaskETags.forPage(usersTasks, fields))
+                .body(SuccessResponse.builder()
+                        .message("Tasks retrieved successfully")
+                        .data(usersTasks)
+                        .build());
+    }
+
     @PatchMapping("/{id}/completed")
     @PreAuthorize(value = "hasRole('USER')")
     @ResponseStatus(HttpStatus.OK)
@@ -82,6 +132,31 @@ public class TaskManagementController {
                 .build();
     }
 
+    @PatchMapping("/bulk/completed")
+    @PreAuthorize(value = "hasRole('USER')")
+    @ResponseStatus(HttpStatus.OK)
+    public SuccessResponse makeTasksAsCompleted(@Valid @RequestBody BulkTaskIdsDto request,
+                                                @AuthenticationPrincipal Jwt jwt) {
+
+        List<BulkItemResultDto> results = taskManagementService.makeTasksAsCompleted(request, jwt);
+        return SuccessResponse.builder()
+                .message("Bulk task status update processed")
+                .data(results)
+                .build();
+    }
+
+    @PatchMapping("/bulk/reopen")
+    @PreAuthorize(value = "hasRole('ADMIN')")
+    @ResponseStatus(HttpStatus.OK)
+    public SuccessResponse reopenTasks(@Valid @RequestBody BulkTaskReopenDto request) {
+
+        List<BulkItemResultDto> results = taskManagementService.reopenTasks(request);
+        return SuccessResponse.builder()
+                .message("Bulk task status update processed")
+                .data(results)
+                .build();
+    }
+
     @PatchMapping("/{id}/comment")
     @PreAuthorize(value = "hasRole('USER')")
     @ResponseStatus(HttpStatus.OK)
@@ -109,6 +184,18 @@ public class TaskManagementController {
                 .build();
     }
 
+    @PatchMapping("/bulk/reassign")
+    @PreAuthorize(value = "hasRole('ADMIN')")
+    @ResponseStatus(HttpStatus.OK)
+    public SuccessResponse reAssignTasks(@Valid @RequestBody BulkReassignTaskDto request) {
+
+        List<BulkItemResultDto> results = taskManagementService.reAssignTasks(request);
+        return SuccessResponse.builder()
+                .message("Bulk task reassignment processed")
+                .data(results)
+                .build();
+    }
+
     @PatchMapping("/{id}")
     @PreAuthorize(value = "hasRole('ADMIN')")
     @ResponseStatus(HttpStatus.OK)
@@ -124,13 +211,74 @@ public class TaskManagementController {
 
     @GetMapping
     @PreAuthorize(value = "hasRole('ADMIN')")
+    public ResponseEntity<SuccessResponse> retrieveAllTasks(@RequestParam(defaultValue = "50") int limit,
+                                            @RequestParam(required = false) String cursor,
+                                            @RequestParam(required = false) String fields) {
+
+        TaskPageDto response = taskManagementService.getAllTasks(limit, cursor, fields);
+        return ResponseEntity.ok()
+                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+                .eTag(TaskETags.forPage(response, fields))
+                .body(SuccessResponse.builder()
+                        .message("Tasks retrieved successfully")
+                        .data(response)
+                        .build());
+    }
+
+    @PostMapping("/export")
+    @PreAuthorize(value = "hasRole('ADMIN')")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public SuccessResponse exportAllTasks(@RequestParam(defaultValue = "false") boolean gzip) {
+
+        return SuccessResponse.builder()
+                .message("Task export started")
+                .data(taskExportService.startExport(gzip))
+                .build();
+    }
+
+    @GetMapping("/export/{exportId}")
+    @PreAuthorize(value = "hasRole('ADMIN')")
     @ResponseStatus(HttpStatus.OK)
-    public SuccessResponse retrieveAllTasks() {
+    public SuccessResponse retrieveTaskExport(@PathVariable String exportId) {
+
+        return SuccessResponse.builder()
+                .message("Task export retrieved successfully")
+                .data(taskExportService.getExport(exportId))
+                .build();
+    }
+
+    @GetMapping("/search")
+    @PreAuthorize(value = "hasRole('ADMIN')")
+    @ResponseStatus(HttpStatus.OK)
+    public SuccessResponse searchTasks(@RequestParam("q") String query,
+                                       @RequestParam(defaultValue = "20") int limit) {
 
-        List<TaskDto> response = taskManagementService.getAllTasks();
         return SuccessResponse.builder()
                 .message("Tasks retrieved successfully")
-                .data(response)
+                .data(taskSearchService.searchTasks(query, limit))
+                .build();
+    }
+
+    @GetMapping("/summary")
+    @PreAuthorize(value = "hasRole('ADMIN')")
+    @ResponseStatus(HttpStatus.OK)
+    public SuccessResponse retrieveTaskSummary(@RequestParam(required = false) String responsibility,
+                                               @RequestParam(required = false) String assignedBy) {
+
+        return SuccessResponse.builder()
+                .message("Task summary retrieved successfully")
+                .data(taskSummaryService.getSummary(responsibility, assignedBy))
+                .build();
+    }
+
+    @GetMapping("/cache/stats")
+    @PreAuthorize(value = "hasRole('ADMIN')")
+    @ResponseStatus(HttpStatus.OK)
+    public SuccessResponse retrieveCacheStats() {
+
+        return SuccessResponse.builder()
+                .message("Cache stats retrieved successfully")
+                .data(taskReadCache.stats())
                 .build();
     }
 }
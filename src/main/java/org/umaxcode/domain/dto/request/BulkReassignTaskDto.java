@@ -0,0 +1,22 @@
+package org.umaxcode.domain.dto.request;
+
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record BulkReassignTaskDto(
+
+        @NotEmpty(message = "Task ids are required")
+        @Size(max = 100, message = "At most 100 tasks can be updated at once")
+        List<@NotBlank(message = "Task id must not be blank") String> ids,
+
+        @NotBlank(message = "User email is required")
+        @Email(message = "Invalid email")
+        String userEmail,
+
+        boolean atomic
+) {
+}
@@ -0,0 +1,17 @@
+package org.umaxcode.domain.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record BulkTaskIdsDto(
+
+        @NotEmpty(message = "Task ids are required")
+        @Size(max = 100, message = "At most 100 tasks can be updated at once")
+        List<@NotBlank(message = "Task id must not be blank") String> ids,
+
+        boolean atomic
+) {
+}
@@ -0,0 +1,24 @@
+package org.umaxcode.domain.dto.request;
+
+import jakarta.validation.constraints.Future;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public record BulkTaskReopenDto(
+
+        @NotEmpty(message = "Task ids are required")
+        @Size(max = 100, message = "At most 100 tasks can be updated at once")
+        List<@NotBlank(message = "Task id must not be blank") String> ids,
+
+        @NotNull(message = "Deadline is required")
+        @Future(message = "Deadline must be in the future")
+        LocalDateTime deadline,
+
+        boolean atomic
+) {
+}
@@ -0,0 +1,15 @@
+package org.umaxcode.domain.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record TaskBatchGetDto(
+
+        @NotEmpty(message = "Task ids are required")
+        @Size(max = 500, message = "At most 500 task ids can be requested at once")
+        List<@NotBlank(message = "Task id must not be blank") String> ids
+) {
+}
@@ -0,0 +1,16 @@
+package org.umaxcode.domain.dto.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record TasksBulkCreationDto(
+
+        @NotEmpty(message = "Tasks are required")
+        @Size(max = 500, message = "At most 500 tasks can be created at once")
+        List<@Valid @NotNull(message = "Task must not be null") TasksCreationDto> tasks
+) {
+}
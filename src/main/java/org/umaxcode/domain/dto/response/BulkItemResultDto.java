@@ -0,0 +1,15 @@
+package org.umaxcode.domain.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BulkItemResultDto(
+        Integer index,
+        String taskId,
+        boolean success,
+        String error,
+        TaskDto task
+) {
+}
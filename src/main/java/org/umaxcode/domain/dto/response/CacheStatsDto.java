@@ -0,0 +1,16 @@
+package org.umaxcode.domain.dto.response;
+
+import lombok.Builder;
+
+@Builder
+public record CacheStatsDto(
+        int size,
+        int maxSize,
+        long ttlSeconds,
+        long hits,
+        long misses,
+        long evictions,
+        long expirations,
+        long invalidations
+) {
+}
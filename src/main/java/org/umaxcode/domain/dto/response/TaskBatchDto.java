@@ -0,0 +1,12 @@
+package org.umaxcode.domain.dto.response;
+
+import lombok.Builder;
+
+import java.util.List;
+
+@Builder
+public record TaskBatchDto(
+        List<TaskDto> tasks,
+        List<String> missing
+) {
+}
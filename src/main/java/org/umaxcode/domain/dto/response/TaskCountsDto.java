@@ -0,0 +1,12 @@
+package org.umaxcode.domain.dto.response;
+
+import lombok.Builder;
+
+@Builder
+public record TaskCountsDto(
+        long open,
+        long completed,
+        long expired,
+        long total
+) {
+}
@@ -1,5 +1,6 @@
 package org.umaxcode.domain.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
 import lombok.Getter;
@@ -17,4 +18,8 @@ public class TaskDto {
     String responsibility;
     String comment;
     String assignedBy;
+
+    // Exposed to clients through the ETag header only
+    @JsonIgnore
+    Long version;
 }
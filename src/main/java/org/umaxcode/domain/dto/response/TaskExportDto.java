@@ -0,0 +1,13 @@
+package org.umaxcode.domain.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TaskExportDto(
+        String exportId,
+        String status,
+        String url
+) {
+}
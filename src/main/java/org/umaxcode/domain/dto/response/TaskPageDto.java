@@ -0,0 +1,14 @@
+package org.umaxcode.domain.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+
+import java.util.List;
+
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TaskPageDto(
+        List<TaskDto> tasks,
+        String nextCursor
+) {
+}
@@ -0,0 +1,13 @@
+package org.umaxcode.domain.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TaskSummaryDto(
+        TaskCountsDto all,
+        TaskCountsDto responsibility,
+        TaskCountsDto assignedBy
+) {
+}
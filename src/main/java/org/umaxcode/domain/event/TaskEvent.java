@@ -0,0 +1,23 @@
+package org.umaxcode.domain.event;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+// Body of every task notification message, short property names keep the payload small
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TaskEvent(
+        @JsonProperty("v") int version,
+        @JsonProperty("r") String reason,
+        @JsonProperty("id") String taskId,
+        @JsonProperty("n") String name,
+        @JsonProperty("d") String description,
+        @JsonProperty("dl") String deadline,
+        @JsonProperty("to") String receiver,
+        @JsonProperty("by") String assignedBy,
+        @JsonProperty("t") String topicArn,
+        @JsonProperty("s") String subject
+) {
+
+    // Bumped only for changes older readers cannot ignore, added properties keep the version
+    public static final int CURRENT_VERSION = 1;
+}
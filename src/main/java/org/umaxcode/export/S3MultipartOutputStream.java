@@ -0,0 +1,107 @@
+package org.umaxcode.export;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+// Uploads what is written as parts of one multipart upload, so memory is bounded by a single part whatever the size.
+// Not thread safe, callers writing from several threads synchronize on the stream.
+public class S3MultipartOutputStream extends OutputStream {
+
+    // S3 rejects parts below 5 MB except the last one
+    private static final int PART_SIZE = 8 * 1024 * 1024;
+
+    private final S3Client s3Client;
+    private final String bucket;
+    private final String key;
+    private final String uploadId;
+    private final List<CompletedPart> parts = new ArrayList<>();
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(PART_SIZE);
+    private boolean closed;
+
+    public S3MultipartOutputStream(S3Client s3Client, String bucket, String key, String contentType,
+                                   String contentEncoding) {
+        this.s3Client = s3Client;
+        this.bucket = bucket;
+        this.key = key;
+        this.uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .contentType(contentType)
+                .contentEncoding(contentEncoding)
+                .build()).uploadId();
+    }
+
+    @Override
+    public void write(int b) {
+
+        buffer.write(b);
+        if (buffer.size() >= PART_SIZE) {
+            uploadPart();
+        }
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+
+        buffer.write(bytes, offset, length);
+        if (buffer.size() >= PART_SIZE) {
+            uploadPart();
+        }
+    }
+
+    // Completes the upload, the object only appears once every part is in
+    @Override
+    public void close() {
+
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        if (buffer.size() > 0 || parts.isEmpty()) {
+            uploadPart();
+        }
+        s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .uploadId(uploadId)
+                .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                .build());
+    }
+
+    // Drops the parts uploaded so far, nothing is left behind in the bucket
+    public void abort() {
+
+        closed = true;
+        s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .uploadId(uploadId)
+                .build());
+    }
+
+    private void uploadPart() {
+
+        int partNumber = parts.size() + 1;
+        String eTag = s3Client.uploadPart(UploadPartRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .partNumber(partNumber)
+                        .build(),
+                RequestBody.fromBytes(buffer.toByteArray())).eTag();
+        parts.add(CompletedPart.builder().partNumber(partNumber).eTag(eTag).build());
+        buffer.reset();
+    }
+}
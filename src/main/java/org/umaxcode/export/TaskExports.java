@@ -0,0 +1,19 @@
+package org.umaxcode.export;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+// Where an export job writes its NDJSON file and, when it fails, its error marker
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class TaskExports {
+
+    public static final String CONTENT_TYPE = "application/x-ndjson";
+
+    public static String keyOf(String exportId) {
+        return "exports/" + exportId + ".ndjson";
+    }
+
+    public static String failureKeyOf(String exportId) {
+        return "exports/" + exportId + ".failed";
+    }
+}
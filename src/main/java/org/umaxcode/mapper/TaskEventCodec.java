@@ -0,0 +1,94 @@
+package org.umaxcode.mapper;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.umaxcode.domain.event.TaskEvent;
+import org.umaxcode.exception.TaskManagementException;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.Map;
+import java.util.UUID;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class TaskEventCodec {
+
+    // Task attribute holding the last event of an update, relayed to the queue from the table stream
+    public static final String OUTBOX_ATTRIBUTE = "outbox";
+
+    // Readers and writers are immutable, so one instance of each is shared by every thread
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private static final ObjectWriter WRITER = OBJECT_MAPPER.writerFor(TaskEvent.class);
+    private static final ObjectReader READER = OBJECT_MAPPER.readerFor(TaskEvent.class);
+
+    public static TaskEvent fromTaskItem(String reason, Map<String, AttributeValue> taskDetails, String subject, String topicArn) {
+
+        return new TaskEvent(TaskEvent.CURRENT_VERSION, reason,
+                taskDetails.get("taskId").s(),
+                taskDetails.get("name").s(),
+                taskDetails.get("description").s(),
+                taskDetails.get("deadline").s(),
+                taskDetails.get("responsibility").s(),
+                taskDetails.get("assignedBy").s(),
+                topicArn, subject);
+    }
+
+    // A fresh event id per write lets the relay tell a new event from an unrelated change to the same task
+    public static AttributeValue outboxOf(String reason, String subject, String topicArn) {
+
+        return AttributeValue.builder().m(Map.of(
+                "eventId", AttributeValue.builder().s(UUID.randomUUID().toString()).build(),
+                "reason", AttributeValue.builder().s(reason).build(),
+                "subject", AttributeValue.builder().s(subject).build(),
+                "topicArn", AttributeValue.builder().s(topicArn).build()
+        )).build();
+    }
+
+    public static String encode(TaskEvent event) {
+
+        try {
+            return WRITER.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new TaskManagementException("Failed to encode task event: " + e.getMessage());
+        }
+    }
+
+    public static boolean isEncoded(String body) {
+        return body != null && body.startsWith("{");
+    }
+
+    public static TaskEvent decode(String body) {
+
+        TaskEvent event;
+        try {
+            event = READER.readValue(body);
+        } catch (JsonProcessingException e) {
+            throw new TaskManagementException("Malformed task event: " + e.getMessage());
+        }
+
+        if (event.version() < 1 || event.version() > TaskEvent.CURRENT_VERSION) {
+            throw new TaskManagementException("Unsupported task event version: " + event.version());
+        }
+        return event;
+    }
+
+    // Messages queued before the envelope existed carry the fields as string message attributes
+    public static TaskEvent fromLegacyAttributes(Map<String, String> attributes) {
+
+        return new TaskEvent(TaskEvent.CURRENT_VERSION,
+                attributes.get("reason"),
+                attributes.get("taskId"),
+                attributes.get("name"),
+                attributes.get("description"),
+                attributes.get("deadline"),
+                attributes.get("receiver"),
+                attributes.get("assignedBy"),
+                attributes.get("topicArn"),
+                attributes.get("messageSubject"));
+    }
+}
@@ -25,6 +25,7 @@ public class TaskMapper {
                 .responsibility(item.get("responsibility").s())
                 .comment(comment != null ? comment.s() : null)
                 .assignedBy(item.get("assignedBy").s())
+                .version(versionOf(item))
                 .build();
     }
 
@@ -34,4 +35,40 @@ public class TaskMapper {
                 .map(TaskMapper::mapToTaskDto)
                 .toList();
     }
+
+    // Maps items read with a projection, leaving every attribute that was not read as null
+    public static TaskDto mapToPartialTaskDto(Map<String, AttributeValue> item) {
+
+        AttributeValue status = item.get("status");
+        return TaskDto.builder()
+                .id(stringOrNull(item.get("taskId")))
+                .name(stringOrNull(item.get("name")))
+                .description(stringOrNull(item.get("description")))
+                .status(status != null ? TaskStatus.fromValue(status.s()) : null)
+                .deadline(stringOrNull(item.get("deadline")))
+                .responsibility(stringOrNull(item.get("responsibility")))
+                .comment(stringOrNull(item.get("comment")))
+                .assignedBy(stringOrNull(item.get("assignedBy")))
+                .version(versionOf(item))
+                .build();
+    }
+
+    public static List<TaskDto> mapToListPartialTaskDto(List<Map<String, AttributeValue>> items) {
+
+        return items.stream()
+                .map(TaskMapper::mapToPartialTaskDto)
+                .toList();
+    }
+
+    // Tasks written before versioning was introduced count as version 0
+    public static long versionOf(Map<String, AttributeValue> item) {
+
+        AttributeValue version = item.get("version");
+        return version != null ? Long.parseLong(version.n()) : 0L;
+    }
+
+    private static String stringOrNull(AttributeValue value) {
+
+        return value != null ? value.s() : null;
+    }
 }
@@ -0,0 +1,57 @@
+package org.umaxcode.mapper;
+
+import org.umaxcode.exception.TaskManagementException;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+
+public record TaskProjection(String expression, Map<String, String> attributeNames) {
+
+    // Response field -> table attribute
+    private static final Map<String, String> FIELD_ATTRIBUTES = new LinkedHashMap<>();
+
+    static {
+        FIELD_ATTRIBUTES.put("id", "taskId");
+        FIELD_ATTRIBUTES.put("name", "name");
+        FIELD_ATTRIBUTES.put("description", "description");
+        FIELD_ATTRIBUTES.put("status", "status");
+        FIELD_ATTRIBUTES.put("deadline", "deadline");
+        FIELD_ATTRIBUTES.put("responsibility", "responsibility");
+        FIELD_ATTRIBUTES.put("comment", "comment");
+        FIELD_ATTRIBUTES.put("assignedBy", "assignedBy");
+    }
+
+    // Only trims the response payload, DynamoDB still charges the read by the full item size
+    public static TaskProjection fromFields(String fields) {
+
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+
+        // Placeholders keep reserved words such as name, status and comment usable
+        Map<String, String> attributeNames = new HashMap<>();
+        StringJoiner expression = new StringJoiner(", ");
+        for (String field : fields.split(",")) {
+            String attribute = FIELD_ATTRIBUTES.get(field.trim());
+            if (attribute == null) {
+                throw new TaskManagementException("Unknown field: " + field.trim());
+            }
+
+            String placeholder = "#p_" + attribute;
+            if (attributeNames.put(placeholder, attribute) == null) {
+                expression.add(placeholder);
+            }
+        }
+
+        // Id and version are always read so partial responses still carry a reliable ETag
+        for (String attribute : new String[]{"taskId", "version"}) {
+            if (attributeNames.put("#p_" + attribute, attribute) == null) {
+                expression.add("#p_" + attribute);
+            }
+        }
+
+        return new TaskProjection(expression.toString(), attributeNames);
+    }
+}
@@ -0,0 +1,4 @@
+package org.umaxcode.search;
+
+public record SearchHit(String taskId, double score) {
+}
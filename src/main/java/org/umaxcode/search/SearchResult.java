@@ -0,0 +1,6 @@
+package org.umaxcode.search;
+
+import java.util.List;
+
+public record SearchResult(int totalHits, List<SearchHit> hits) {
+}
@@ -0,0 +1,116 @@
+package org.umaxcode.search;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/*
+ * Changes published since the last compaction of the snapshot, one small object per stream batch:
+ *
+ *   <key>                      compacted snapshot, its "sequence" metadata is the last delta folded into it
+ *   <key>.deltas/<sequence>    JSON map of task id to term frequencies, an empty map removes the task
+ *
+ * Sequences are assigned by the single stream writer and have no gaps, readers apply the deltas above the
+ * snapshot sequence in order.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class TaskSearchDeltas {
+
+    public static final String SEQUENCE_METADATA = "sequence";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final TypeReference<LinkedHashMap<String, Map<String, Integer>>> CHANGES_TYPE = new TypeReference<>() {
+    };
+    private static final int MAX_DELETE_KEYS = 1000;
+
+    public static String prefixOf(String key) {
+        return key + ".deltas/";
+    }
+
+    // Zero padded, so the listing order is the sequence order
+    public static String keyOf(String key, long sequence) {
+        return prefixOf(key) + String.format("%019d", sequence);
+    }
+
+    public static long sequenceOf(Map<String, String> metadata) {
+
+        String sequence = metadata == null ? null : metadata.get(SEQUENCE_METADATA);
+        return sequence == null ? 0 : Long.parseLong(sequence);
+    }
+
+    public static NavigableMap<Long, String> list(S3Client s3Client, String bucket, String key) {
+
+        NavigableMap<Long, String> deltas = new TreeMap<>();
+        String prefix = prefixOf(key);
+        s3Client.listObjectsV2Paginator(ListObjectsV2Request.builder()
+                        .bucket(bucket)
+                        .prefix(prefix)
+                        .build())
+                .contents()
+                .stream()
+                .map(S3Object::key)
+                .forEach(deltaKey -> deltas.put(Long.parseLong(deltaKey.substring(prefix.length())), deltaKey));
+        return deltas;
+    }
+
+    public static void write(S3Client s3Client, String bucket, String key, long sequence,
+                             Map<String, Map<String, Integer>> changes) throws IOException {
+
+        s3Client.putObject(PutObjectRequest.builder()
+                .bucket(bucket)
+                .key(keyOf(key, sequence))
+                .contentType("application/json")
+                .build(), RequestBody.fromBytes(OBJECT_MAPPER.writeValueAsBytes(changes)));
+    }
+
+    // Later deltas overwrite the changes of earlier ones to the same task
+    public static Map<String, Map<String, Integer>> read(S3Client s3Client, String bucket, Collection<String> deltaKeys)
+            throws IOException {
+
+        Map<String, Map<String, Integer>> changes = new LinkedHashMap<>();
+        for (String deltaKey : deltaKeys) {
+            try (InputStream delta = s3Client.getObject(GetObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(deltaKey)
+                    .build())) {
+                changes.putAll(OBJECT_MAPPER.readValue(delta, CHANGES_TYPE));
+            }
+        }
+        return changes;
+    }
+
+    public static void delete(S3Client s3Client, String bucket, Collection<String> deltaKeys) {
+
+        List<ObjectIdentifier> identifiers = deltaKeys.stream()
+                .map(deltaKey -> ObjectIdentifier.builder().key(deltaKey).build())
+                .toList();
+        for (int from = 0; from < identifiers.size(); from += MAX_DELETE_KEYS) {
+            s3Client.deleteObjects(DeleteObjectsRequest.builder()
+                    .bucket(bucket)
+                    .delete(Delete.builder()
+                            .objects(identifiers.subList(from, Math.min(from + MAX_DELETE_KEYS, identifiers.size())))
+                            .quiet(true)
+                            .build())
+                    .build());
+        }
+    }
+}
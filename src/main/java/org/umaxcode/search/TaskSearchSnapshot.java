@@ -0,0 +1,272 @@
+package org.umaxcode.search;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/*
+ * Read-only inverted index laid out so it can be queried straight from a memory mapped file:
+ *
+ *   header     magic, version, docCount, termCount, totalDocLength, section offsets
+ *   docs       docCount x (idOffset, idLength, docLength)
+ *   postings   per term, (doc gap, frequency) pairs as varints, docs ascending
+ *   terms      termCount x (termOffset, termLength, postingsOffset, postingCount), sorted by UTF-8 bytes
+ *   strings    UTF-8 task ids and terms referenced by the tables above
+ */
+public class TaskSearchSnapshot {
+
+    static final int MAGIC = 0x54534958;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 40;
+    static final int DOC_ENTRY_SIZE = 12;
+    static final int TERM_ENTRY_SIZE = 16;
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    private final ByteBuffer buffer;
+    private final int docCount;
+    private final int termCount;
+    private final long totalDocLength;
+    private final int docTableOffset;
+    private final int postingsOffset;
+    private final int termTableOffset;
+    private final int stringsOffset;
+
+    private TaskSearchSnapshot(ByteBuffer buffer) {
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Not a task search snapshot");
+        }
+
+        this.buffer = buffer;
+        this.docCount = buffer.getInt(8);
+        this.termCount = buffer.getInt(12);
+        this.totalDocLength = buffer.getLong(16);
+        this.docTableOffset = buffer.getInt(24);
+        this.postingsOffset = buffer.getInt(28);
+        this.termTableOffset = buffer.getInt(32);
+        this.stringsOffset = buffer.getInt(36);
+    }
+
+    public static TaskSearchSnapshot open(Path file) throws IOException {
+
+        // The mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new TaskSearchSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public static TaskSearchSnapshot wrap(ByteBuffer buffer) {
+        return new TaskSearchSnapshot(buffer);
+    }
+
+    public static TaskSearchSnapshot empty() {
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(0)
+                .putInt(0)
+                .putLong(0)
+                .putInt(HEADER_SIZE)
+                .putInt(HEADER_SIZE)
+                .putInt(HEADER_SIZE)
+                .putInt(HEADER_SIZE);
+        return new TaskSearchSnapshot(header.flip());
+    }
+
+    public SearchResult search(String query, int limit) {
+
+        Map<Integer, Double> scores = new HashMap<>();
+        double averageDocLength = docCount == 0 ? 0 : (double) totalDocLength / docCount;
+
+        for (Tokenizer.QueryTerm queryTerm : Tokenizer.parseQuery(query)) {
+            byte[] key = queryTerm.text().getBytes(StandardCharsets.UTF_8);
+            int term = lowerBound(key);
+
+            if (queryTerm.prefix()) {
+                for (int expansions = 0; term < termCount && expansions < MAX_PREFIX_EXPANSIONS
+                        && termStartsWith(term, key); term++, expansions++) {
+                    score(term, averageDocLength, scores);
+                }
+            } else if (term < termCount && compareTerm(term, key) == 0) {
+                score(term, averageDocLength, scores);
+            }
+        }
+
+        // Min-heap of the best hits seen so far
+        PriorityQueue<Map.Entry<Integer, Double>> top = new PriorityQueue<>(Map.Entry.comparingByValue());
+        for (Map.Entry<Integer, Double> score : scores.entrySet()) {
+            top.offer(score);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+
+        List<SearchHit> hits = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            Map.Entry<Integer, Double> hit = top.poll();
+            hits.add(0, new SearchHit(docId(hit.getKey()), hit.getValue()));
+        }
+        return new SearchResult(scores.size(), hits);
+    }
+
+    int docCount() {
+        return docCount;
+    }
+
+    int termCount() {
+        return termCount;
+    }
+
+    String docId(int doc) {
+
+        int entry = docTableOffset + doc * DOC_ENTRY_SIZE;
+        return string(buffer.getInt(entry), buffer.getInt(entry + 4));
+    }
+
+    int docLength(int doc) {
+        return buffer.getInt(docTableOffset + doc * DOC_ENTRY_SIZE + 8);
+    }
+
+    byte[] termBytes(int term) {
+
+        int entry = termTableOffset + term * TERM_ENTRY_SIZE;
+        byte[] bytes = new byte[buffer.getInt(entry + 4)];
+        buffer.get(stringsOffset + buffer.getInt(entry), bytes);
+        return bytes;
+    }
+
+    PostingCursor postings(int term) {
+
+        int entry = termTableOffset + term * TERM_ENTRY_SIZE;
+        return new PostingCursor(buffer, postingsOffset + buffer.getInt(entry + 8), buffer.getInt(entry + 12));
+    }
+
+    // BM25 contribution of one term to every document that contains it
+    private void score(int term, double averageDocLength, Map<Integer, Double> scores) {
+
+        PostingCursor postings = postings(term);
+        int documentFrequency = postings.remaining();
+        double idf = Math.log(1 + (docCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+
+        while (postings.next()) {
+            int frequency = postings.frequency();
+            double norm = K1 * (1 - B + B * docLength(postings.doc()) / averageDocLength);
+            scores.merge(postings.doc(), idf * frequency * (K1 + 1) / (frequency + norm), Double::sum);
+        }
+    }
+
+    private int lowerBound(byte[] key) {
+
+        int low = 0;
+        int high = termCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareTerm(middle, key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int compareTerm(int term, byte[] key) {
+
+        int entry = termTableOffset + term * TERM_ENTRY_SIZE;
+        int offset = stringsOffset + buffer.getInt(entry);
+        int length = buffer.getInt(entry + 4);
+
+        for (int i = 0; i < Math.min(length, key.length); i++) {
+            int compare = Byte.compareUnsigned(buffer.get(offset + i), key[i]);
+            if (compare != 0) {
+                return compare;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private boolean termStartsWith(int term, byte[] prefix) {
+
+        int entry = termTableOffset + term * TERM_ENTRY_SIZE;
+        int offset = stringsOffset + buffer.getInt(entry);
+        if (buffer.getInt(entry + 4) < prefix.length) {
+            return false;
+        }
+
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(offset + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String string(int offset, int length) {
+
+        byte[] bytes = new byte[length];
+        buffer.get(stringsOffset + offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static final class PostingCursor {
+
+        private final ByteBuffer buffer;
+        private int position;
+        private int remaining;
+        private int doc;
+        private int frequency;
+
+        private PostingCursor(ByteBuffer buffer, int position, int remaining) {
+            this.buffer = buffer;
+            this.position = position;
+            this.remaining = remaining;
+        }
+
+        boolean next() {
+
+            if (remaining == 0) {
+                return false;
+            }
+            doc += readVarInt();
+            frequency = readVarInt();
+            remaining--;
+            return true;
+        }
+
+        int doc() {
+            return doc;
+        }
+
+        int frequency() {
+            return frequency;
+        }
+
+        int remaining() {
+            return remaining;
+        }
+
+        private int readVarInt() {
+
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer.get(position++);
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
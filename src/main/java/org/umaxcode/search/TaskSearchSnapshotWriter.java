@@ -0,0 +1,172 @@
+package org.umaxcode.search;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class TaskSearchSnapshotWriter {
+
+    /*
+     * Writes base with the changed tasks applied to target. Each change maps a task id to the term
+     * frequencies of its new text, an empty map removes the task. Kept documents and terms are
+     * streamed over in order, so only the changes are ever held in memory as objects.
+     */
+    public static void merge(TaskSearchSnapshot base, Map<String, Map<String, Integer>> changes, Path target)
+            throws IOException {
+
+        // Unchanged documents keep their relative order, changed ones are appended after them
+        int[] remap = new int[base.docCount()];
+        List<String> docIds = new ArrayList<>();
+        List<Integer> docLengths = new ArrayList<>();
+        for (int doc = 0; doc < base.docCount(); doc++) {
+            String docId = base.docId(doc);
+            if (changes.containsKey(docId)) {
+                remap[doc] = -1;
+            } else {
+                remap[doc] = docIds.size();
+                docIds.add(docId);
+                docLengths.add(base.docLength(doc));
+            }
+        }
+
+        Map<String, List<int[]>> changedPostings = new HashMap<>();
+        for (Map.Entry<String, Map<String, Integer>> change : changes.entrySet()) {
+            if (change.getValue().isEmpty()) {
+                continue;
+            }
+
+            int doc = docIds.size();
+            docIds.add(change.getKey());
+            docLengths.add(change.getValue().values().stream().mapToInt(Integer::intValue).sum());
+            change.getValue().forEach((term, frequency) ->
+                    changedPostings.computeIfAbsent(term, t -> new ArrayList<>()).add(new int[]{doc, frequency}));
+        }
+
+        List<byte[]> changedTerms = new ArrayList<>();
+        Map<ByteBuffer, List<int[]>> postingsByTerm = new HashMap<>();
+        changedPostings.forEach((term, postings) -> {
+            byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+            changedTerms.add(bytes);
+            postingsByTerm.put(ByteBuffer.wrap(bytes), postings);
+        });
+        changedTerms.sort(Arrays::compareUnsigned);
+
+        ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        ByteArrayOutputStream termTableBytes = new ByteArrayOutputStream();
+        DataOutputStream termTable = new DataOutputStream(termTableBytes);
+        long totalDocLength = 0;
+        int termCount = 0;
+        int docTableOffset;
+        int postingsOffset;
+        int termTableOffset;
+        int stringsOffset;
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(target), 1 << 16))) {
+            out.write(new byte[TaskSearchSnapshot.HEADER_SIZE]);
+
+            docTableOffset = out.size();
+            for (int doc = 0; doc < docIds.size(); doc++) {
+                byte[] id = docIds.get(doc).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(strings.size());
+                out.writeInt(id.length);
+                out.writeInt(docLengths.get(doc));
+                strings.write(id);
+                totalDocLength += docLengths.get(doc);
+            }
+
+            // Merge join of the old sorted vocabulary with the sorted changed terms
+            postingsOffset = out.size();
+            int oldTerm = 0;
+            int newTerm = 0;
+            while (oldTerm < base.termCount() || newTerm < changedTerms.size()) {
+                byte[] oldBytes = oldTerm < base.termCount() ? base.termBytes(oldTerm) : null;
+                byte[] newBytes = newTerm < changedTerms.size() ? changedTerms.get(newTerm) : null;
+                int compare = oldBytes == null ? 1 : newBytes == null ? -1 : Arrays.compareUnsigned(oldBytes, newBytes);
+
+                int termPostingsOffset = out.size() - postingsOffset;
+                int previousDoc = 0;
+                int written = 0;
+                if (compare <= 0) {
+                    TaskSearchSnapshot.PostingCursor postings = base.postings(oldTerm++);
+                    while (postings.next()) {
+                        int doc = remap[postings.doc()];
+                        if (doc >= 0) {
+                            writeVarInt(out, doc - previousDoc);
+                            writeVarInt(out, postings.frequency());
+                            previousDoc = doc;
+                            written++;
+                        }
+                    }
+                }
+                if (compare >= 0) {
+                    for (int[] posting : postingsByTerm.get(ByteBuffer.wrap(changedTerms.get(newTerm++)))) {
+                        writeVarInt(out, posting[0] - previousDoc);
+                        writeVarInt(out, posting[1]);
+                        previousDoc = posting[0];
+                        written++;
+                    }
+                }
+
+                // Terms whose documents were all removed drop out of the vocabulary
+                if (written > 0) {
+                    byte[] term = compare <= 0 ? oldBytes : newBytes;
+                    termTable.writeInt(strings.size());
+                    termTable.writeInt(term.length);
+                    termTable.writeInt(termPostingsOffset);
+                    termTable.writeInt(written);
+                    strings.write(term);
+                    termCount++;
+                }
+            }
+
+            termTableOffset = out.size();
+            termTableBytes.writeTo(out);
+
+            stringsOffset = out.size();
+            if ((long) stringsOffset + strings.size() >= Integer.MAX_VALUE) {
+                throw new IllegalStateException("Task search snapshot exceeds 2GB");
+            }
+            strings.writeTo(out);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(TaskSearchSnapshot.HEADER_SIZE)
+                .putInt(TaskSearchSnapshot.MAGIC)
+                .putInt(TaskSearchSnapshot.VERSION)
+                .putInt(docIds.size())
+                .putInt(termCount)
+                .putLong(totalDocLength)
+                .putInt(docTableOffset)
+                .putInt(postingsOffset)
+                .putInt(termTableOffset)
+                .putInt(stringsOffset)
+                .flip();
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.WRITE)) {
+            channel.write(header, 0);
+        }
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+}
@@ -0,0 +1,67 @@
+package org.umaxcode.search;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class Tokenizer {
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final int MIN_TOKEN_LENGTH = 2;
+    private static final int MAX_TOKEN_LENGTH = 64;
+
+    public static List<String> tokenize(String text) {
+
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return tokens;
+        }
+
+        for (String token : SEPARATORS.split(text.toLowerCase(Locale.ROOT))) {
+            if (token.length() >= MIN_TOKEN_LENGTH && token.length() <= MAX_TOKEN_LENGTH) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    public static Map<String, Integer> termFrequencies(String... fields) {
+
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String field : fields) {
+            for (String token : tokenize(field)) {
+                frequencies.merge(token, 1, Integer::sum);
+            }
+        }
+        return frequencies;
+    }
+
+    // A trailing * turns the last token of a word into a prefix query, e.g. "deplo*"
+    public static List<QueryTerm> parseQuery(String query) {
+
+        LinkedHashSet<QueryTerm> terms = new LinkedHashSet<>();
+        if (query == null) {
+            return new ArrayList<>();
+        }
+
+        for (String word : query.trim().split("\\s+")) {
+            boolean prefix = word.endsWith("*");
+            List<String> tokens = tokenize(word);
+            for (int i = 0; i < tokens.size(); i++) {
+                terms.add(new QueryTerm(tokens.get(i), prefix && i == tokens.size() - 1));
+            }
+        }
+        return new ArrayList<>(terms);
+    }
+
+    public record QueryTerm(String text, boolean prefix) {
+    }
+}
@@ -0,0 +1,10 @@
+package org.umaxcode.service;
+
+import org.umaxcode.domain.dto.response.TaskExportDto;
+
+public interface TaskExportService {
+
+    TaskExportDto startExport(boolean gzip);
+
+    TaskExportDto getExport(String exportId);
+}
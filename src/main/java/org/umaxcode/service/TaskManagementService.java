@@ -2,7 +2,10 @@ package org.umaxcode.service;
 
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.umaxcode.domain.dto.request.*;
+import org.umaxcode.domain.dto.response.BulkItemResultDto;
+import org.umaxcode.domain.dto.response.TaskBatchDto;
 import org.umaxcode.domain.dto.response.TaskDto;
+import org.umaxcode.domain.dto.response.TaskPageDto;
 
 import java.util.List;
 
@@ -10,19 +13,29 @@ public interface TaskManagementService {
 
     TaskDto createAndAssignTask(TasksCreationDto item, String email);
 
-    TaskDto fetchTask(String id);
+    List<BulkItemResultDto> createAndAssignTasks(List<TasksCreationDto> requests, String email);
 
-    List<TaskDto> getAllTasks();
+    TaskDto fetchTask(String id, String fields);
 
-    List<TaskDto> getUsersTasks(String email);
+    TaskBatchDto batchGetTasks(List<String> ids);
+
+    TaskPageDto getAllTasks(int limit, String cursor, String fields);
+
+    TaskPageDto getUsersTasks(String email, int limit, String cursor, String status, String order, String fields);
 
     TaskDto makeTaskAsCompleted(String id, Jwt jwt);
 
+    List<BulkItemResultDto> makeTasksAsCompleted(BulkTaskIdsDto request, Jwt jwt);
+
     TaskDto reopenTask(String id, TaskReopenDto request);
 
+    List<BulkItemResultDto> reopenTasks(BulkTaskReopenDto request);
+
     TaskDto updateTaskComment(String id, TaskCommentUpdateDto request);
 
     TaskDto reAssignTask(String id, ReassignTaskDto request);
 
+    List<BulkItemResultDto> reAssignTasks(BulkReassignTaskDto request);
+
     TaskDto updateTaskDetails(String id, TaskDetailsUpdateDto request);
 }
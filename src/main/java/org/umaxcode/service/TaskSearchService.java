@@ -0,0 +1,8 @@
+package org.umaxcode.service;
+
+import org.umaxcode.domain.dto.response.TaskSearchDto;
+
+public interface TaskSearchService {
+
+    TaskSearchDto searchTasks(String query, int limit);
+}
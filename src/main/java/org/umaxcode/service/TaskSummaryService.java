@@ -0,0 +1,8 @@
+package org.umaxcode.service;
+
+import org.umaxcode.domain.dto.response.TaskSummaryDto;
+
+public interface TaskSummaryService {
+
+    TaskSummaryDto getSummary(String responsibility, String assignedBy);
+}
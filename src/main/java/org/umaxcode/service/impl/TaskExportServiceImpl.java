@@ -0,0 +1,121 @@
+package org.umaxcode.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.umaxcode.domain.dto.response.TaskExportDto;
+import org.umaxcode.exception.TaskManagementException;
+import org.umaxcode.export.TaskExports;
+import org.umaxcode.service.TaskExportService;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.lambda.LambdaClient;
+import software.amazon.awssdk.services.lambda.model.InvocationType;
+import software.amazon.awssdk.services.lambda.model.InvokeRequest;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+
+@Service
+public class TaskExportServiceImpl implements TaskExportService {
+
+    private final LambdaClient lambdaClient;
+    private final S3Client s3Client;
+    private final S3Presigner s3Presigner;
+    private final ObjectMapper objectMapper;
+    private final String bucket;
+    private final String functionName;
+    private final Duration urlTtl;
+
+    public TaskExportServiceImpl(LambdaClient lambdaClient, S3Client s3Client, S3Presigner s3Presigner,
+                                 ObjectMapper objectMapper,
+                                 @Value("${application.export.bucket}") String bucket,
+                                 @Value("${application.export.function-name}") String functionName,
+                                 @Value("${application.export.url-ttl-seconds}") long urlTtlSeconds) {
+        this.lambdaClient = lambdaClient;
+        this.s3Client = s3Client;
+        this.s3Presigner = s3Presigner;
+        this.objectMapper = objectMapper;
+        this.bucket = bucket;
+        this.functionName = functionName;
+        this.urlTtl = Duration.ofSeconds(urlTtlSeconds);
+    }
+
+    @Override
+    public TaskExportDto startExport(boolean gzip) {
+
+        String exportId = UUID.randomUUID().toString();
+        try {
+            // The export job writes straight to S3, so the table size is bound by neither the API timeout nor its payload cap
+            lambdaClient.invoke(InvokeRequest.builder()
+                    .functionName(functionName)
+                    .invocationType(InvocationType.EVENT)
+                    .payload(SdkBytes.fromUtf8String(objectMapper.writeValueAsString(Map.of(
+                            "exportId", exportId,
+                            "gzip", String.valueOf(gzip)
+                    ))))
+                    .build());
+        } catch (JsonProcessingException e) {
+            throw new TaskManagementException("Failed to start task export");
+        }
+
+        return TaskExportDto.builder()
+                .exportId(exportId)
+                .status("pending")
+                .build();
+    }
+
+    @Override
+    public TaskExportDto getExport(String exportId) {
+
+        try {
+            UUID.fromString(exportId);
+        } catch (IllegalArgumentException e) {
+            throw new TaskManagementException("Invalid export id");
+        }
+
+        String key = TaskExports.keyOf(exportId);
+        if (exists(key)) {
+            String url = s3Presigner.presignGetObject(GetObjectPresignRequest.builder()
+                    .signatureDuration(urlTtl)
+                    .getObjectRequest(GetObjectRequest.builder()
+                            .bucket(bucket)
+                            .key(key)
+                            .build())
+                    .build()).url().toString();
+            return TaskExportDto.builder()
+                    .exportId(exportId)
+                    .status("ready")
+                    .url(url)
+                    .build();
+        }
+
+        return TaskExportDto.builder()
+                .exportId(exportId)
+                .status(exists(TaskExports.failureKeyOf(exportId)) ? "failed" : "pending")
+                .build();
+    }
+
+    private boolean exists(String key) {
+
+        try {
+            s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .build());
+            return true;
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return false;
+            }
+            throw e;
+        }
+    }
+}
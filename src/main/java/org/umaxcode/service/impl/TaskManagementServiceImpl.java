@@ -1,88 +1,172 @@
 package org.umaxcode.service.impl;
 
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Service;
+import org.umaxcode.cache.TaskReadCache;
 import org.umaxcode.domain.dto.request.*;
+import org.umaxcode.domain.dto.response.BulkItemResultDto;
+import org.umaxcode.domain.dto.response.TaskBatchDto;
 import org.umaxcode.domain.dto.response.TaskDto;
+import org.umaxcode.domain.dto.response.TaskPageDto;
 import org.umaxcode.domain.enums.TaskStatus;
 import org.umaxcode.exception.TaskManagementException;
+import org.umaxcode.mapper.TaskEventCodec;
 import org.umaxcode.mapper.TaskMapper;
-import org.umaxcode.service.SQSService;
+import org.umaxcode.mapper.TaskProjection;
 import org.umaxcode.service.TaskManagementService;
+import org.umaxcode.utils.CursorCodec;
+import org.umaxcode.utils.DeadlineBuckets;
+import org.umaxcode.utils.StatusDeadlineKeys;
+import org.umaxcode.utils.TaskIndexRollout;
 import software.amazon.awssdk.services.cognitoidentityprovider.CognitoIdentityProviderClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.*;
-import software.amazon.awssdk.services.sqs.model.MessageAttributeValue;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 @Service
 public class TaskManagementServiceImpl implements TaskManagementService {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int BATCH_GET_SIZE = 100;
+    private static final int BATCH_WRITE_SIZE = 25;
+    private static final int MAX_BATCH_RETRIES = 5;
+
+    private static final String COMPLETE_CONFLICT_MESSAGE = "Invalid task status update: [completed, expired] -> completed or" +
+            "unauthorized modification";
+    private static final String REASSIGN_CONFLICT_MESSAGE = "Invalid task status [expired, completed] during reassignment";
+    private static final String REOPEN_CONFLICT_MESSAGE = "Invalid task status update: [open, completed] -> open";
+
     private final DynamoDbClient dynamoDbClient;
+    private final DynamoDbAsyncClient dynamoDbAsyncClient;
     private final String tasksTableName;
-    private final SQSService sqsService;
-    private final String queueUrl;
     private final String taskCompleteTopicArn;
     private final String taskReopenTopicArn;
     private final String taskAssignTopicArn;
+    private final int scanSegments;
+    private final ExecutorService scanExecutor;
+    private final TaskReadCache taskReadCache;
+    private final int deadlineShardCount;
+    private final String checkpointsTableName;
 
     @Value("${application.aws.userPoolId}")
     private String userPoolId;
 
-    public TaskManagementServiceImpl(DynamoDbClient dynamoDbClient, CognitoIdentityProviderClient cognitoClient, SQSService sqsService) {
+    public TaskManagementServiceImpl(DynamoDbClient dynamoDbClient, DynamoDbAsyncClient dynamoDbAsyncClient,
+                                     CognitoIdentityProviderClient cognitoClient,
+                                     TaskReadCache taskReadCache,
+                                     @Value("${application.tasks.scan-segments}") int scanSegments) {
         this.dynamoDbClient = dynamoDbClient;
+        this.dynamoDbAsyncClient = dynamoDbAsyncClient;
         this.tasksTableName = System.getenv("TASKS_TABLE_NAME");
-        this.queueUrl = System.getenv("QUEUE_URL");
         this.taskCompleteTopicArn = System.getenv("TASKS_COMPLETE_NOTIFICATION_TOPIC_ARN");
         this.taskReopenTopicArn = System.getenv("TASKS_REOPEN_NOTIFICATION_TOPIC_ARN");
         this.taskAssignTopicArn = System.getenv("TASKS_ASSIGNMENT_NOTIFICATION_TOPIC_ARN");
-        this.sqsService = sqsService;
+        this.scanSegments = scanSegments;
+        this.scanExecutor = Executors.newFixedThreadPool(scanSegments);
+        this.taskReadCache = taskReadCache;
+        this.deadlineShardCount = DeadlineBuckets.shardCount();
+        this.checkpointsTableName = System.getenv("SWEEP_CHECKPOINTS_TABLE_NAME");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scanExecutor.shutdown();
     }
 
     @Override
     public TaskDto createAndAssignTask(TasksCreationDto request, String email) {
 
-        Map<String, AttributeValue> item = new HashMap<>();
-        item.put("taskId", AttributeValue.builder().s(UUID.randomUUID().toString()).build());
-        item.put("name", AttributeValue.builder().s(request.name()).build());
-        item.put("description", AttributeValue.builder().s(request.description()).build());
-        item.put("status", AttributeValue.builder().s(TaskStatus.OPEN.getName()).build());
-        item.put("responsibility", AttributeValue.builder().s(request.responsibility()).build());
-        item.put("deadline", AttributeValue.builder().s(request.deadline().toString()).build());
-        item.put("assignedBy", AttributeValue.builder().s(email).build());
-        item.put("isNotifiedForApproachDeadline", AttributeValue.builder().n("0").build());
-
+        Map<String, AttributeValue> item = buildTaskItem(request, email);
 
         PutItemRequest putRequest = PutItemRequest.builder()
                 .tableName(tasksTableName)
                 .item(item)
-                .returnValues("ALL_OLD")
                 .build();
 
         dynamoDbClient.putItem(putRequest);
-        return TaskDto.builder()
-                .id(item.get("taskId").s())
-                .name(request.name())
-                .description(request.description())
-                .status(TaskStatus.OPEN)
-                .responsibility(request.responsibility())
-                .deadline(request.deadline().toString())
-                .assignedBy(email)
-                .build();
+        return TaskMapper.mapToTaskDto(item);
+    }
+
+    @Override
+    public List<BulkItemResultDto> createAndAssignTasks(List<TasksCreationDto> requests, String email) {
+
+        List<Map<String, AttributeValue>> items = requests.stream()
+                .map(request -> buildTaskItem(request, email))
+                .toList();
+
+        List<CompletableFuture<Map<String, String>>> chunks = partition(items, BATCH_WRITE_SIZE).stream()
+                .map(this::batchWriteChunk)
+                .toList();
+
+        Map<String, String> failures = new HashMap<>();
+        for (CompletableFuture<Map<String, String>> chunk : chunks) {
+            failures.putAll(join(chunk));
+        }
+
+        List<BulkItemResultDto> results = new ArrayList<>();
+        for (int index = 0; index < items.size(); index++) {
+            Map<String, AttributeValue> item = items.get(index);
+            String taskId = item.get("taskId").s();
+            String error = failures.get(taskId);
+            results.add(BulkItemResultDto.builder()
+                    .index(index)
+                    .taskId(taskId)
+                    .success(error == null)
+                    .error(error)
+                    .task(error == null ? TaskMapper.mapToTaskDto(item) : null)
+                    .build());
+        }
+
+        return results;
     }
 
     @Override
-    public TaskDto fetchTask(String id) {
+    public TaskDto fetchTask(String id, String fields) {
 
         Map<String, AttributeValue> key = new HashMap<>();
         key.put("taskId", AttributeValue.builder().s(id).build());
 
+        // Partial reads skip the cache, which only holds full tasks
+        TaskProjection projection = TaskProjection.fromFields(fields);
+        if (projection != null) {
+            GetItemRequest request = GetItemRequest.builder()
+                    .tableName(tasksTableName)
+                    .key(key)
+                    .projectionExpression(projection.expression())
+                    .expressionAttributeNames(projection.attributeNames())
+                    .build();
+
+            Map<String, AttributeValue> item = dynamoDbClient.getItem(request).item();
+            if (item != null && !item.isEmpty()) {
+                return TaskMapper.mapToPartialTaskDto(item);
+            }
+            throw new TaskManagementException("Task with the Id : " + id + "not found");
+        }
+
+        TaskDto cachedTask = taskReadCache.get(id);
+        if (cachedTask != null) {
+            return cachedTask;
+        }
+
         GetItemRequest request = GetItemRequest.builder()
                 .tableName(tasksTableName)
                 .key(key)
@@ -91,45 +175,181 @@ public class TaskManagementServiceImpl implements TaskManagementService {
         Map<String, AttributeValue> item = dynamoDbClient.getItem(request).item();
 
         if (item != null) {
-            return TaskDto.builder()
+            TaskDto task = TaskDto.builder()
                     .id(item.get("taskId").s())
                     .name(item.get("name").s())
                     .description(item.get("description").s())
                     .status(TaskStatus.fromValue(item.get("status").s()))
                     .deadline(item.get("deadline").s())
                     .responsibility(item.get("responsibility").s())
+                    .version(TaskMapper.versionOf(item))
                     .build();
+            taskReadCache.put(id, task);
+            return task;
         }
 
         throw new TaskManagementException("Task with the Id : " + id + "not found");
     }
 
     @Override
-    public List<TaskDto> getUsersTasks(String email) {
+    public TaskBatchDto batchGetTasks(List<String> ids) {
+
+        // BatchGetItem rejects duplicate keys within a request
+        List<String> uniqueIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        Map<String, TaskDto> foundTasks = new HashMap<>();
+        for (Map<String, AttributeValue> item : batchGetChunks(uniqueIds, false)) {
+            TaskDto task = TaskMapper.mapToTaskDto(item);
+            foundTasks.put(task.getId(), task);
+        }
 
-        QueryRequest queryRequest = QueryRequest.builder()
-                .tableName(tasksTableName)  // Main table name
-                .indexName("responsibilityIndex")   // GSI name
-                .keyConditionExpression("responsibility = :email")
-                .expressionAttributeValues(Map.of(
-                        ":email", AttributeValue.builder().s(email).build()
-                ))
+        List<TaskDto> tasks = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        for (String id : ids) {
+            TaskDto task = foundTasks.get(id);
+            if (task != null) {
+                tasks.add(task);
+            } else {
+                missing.add(id);
+            }
+        }
+
+        return TaskBatchDto.builder()
+                .tasks(tasks)
+                .missing(missing)
                 .build();
+    }
+
+    @Override
+    public TaskPageDto getUsersTasks(String email, int limit, String cursor, String status, String order, String fields) {
+
+        validatePageLimit(limit);
+
+        boolean orderByDeadline = order != null;
+        if (orderByDeadline && !"deadline".equals(order)) {
+            throw new TaskManagementException("Unsupported order: " + order);
+        }
+        boolean deadlineIndexReady = TaskIndexRollout.stage() >= 1;
+        if (orderByDeadline && !deadlineIndexReady) {
+            throw new TaskManagementException("Deadline order is not available yet");
+        }
+
+        TaskProjection projection = TaskProjection.fromFields(fields);
+        Map<String, String> expressionAttributeNames = new HashMap<>();
+        Map<String, AttributeValue> expressionAttributeValues = new HashMap<>();
+        expressionAttributeValues.put(":email", AttributeValue.builder().s(email).build());
 
-        QueryResponse queryResponse = dynamoDbClient.query(queryRequest);
+        QueryRequest.Builder queryRequest = QueryRequest.builder()
+                .tableName(tasksTableName)  // Main table name
+                .limit(limit);
+
+        // The range key starts with the status, so a status is a key prefix already in deadline order
+        String statusPrefix = null;
+        Set<String> keyAttributes;
+        if (status != null && TaskIndexRollout.statusDeadlineIndexReady(dynamoDbClient, checkpointsTableName)) {
+            statusPrefix = StatusDeadlineKeys.prefixOf(parseStatus(status).getName());
+            expressionAttributeValues.put(":statusPrefix", AttributeValue.builder().s(statusPrefix).build());
+            expressionAttributeNames.put("#statusDeadline", StatusDeadlineKeys.ATTRIBUTE);
+            queryRequest.indexName("responsibilityStatusDeadlineIndex")
+                    .keyConditionExpression("responsibility = :email AND begins_with(#statusDeadline, :statusPrefix)");
+            keyAttributes = Set.of("taskId", "responsibility", StatusDeadlineKeys.ATTRIBUTE);
+        } else if (status != null) {
+            // Until the status index is rolled out the status is filtered, so a page can hold fewer tasks than the limit
+            expressionAttributeValues.put(":status", AttributeValue.builder().s(parseStatus(status).getName()).build());
+            expressionAttributeNames.put("#status", "status");
+            queryRequest.indexName(deadlineIndexReady ? "responsibilityDeadlineIndex" : "responsibilityIndex")
+                    .keyConditionExpression("responsibility = :email")
+                    .filterExpression("#status = :status");
+            keyAttributes = deadlineIndexReady
+                    ? Set.of("taskId", "responsibility", "deadline")
+                    : Set.of("taskId", "responsibility");
+        } else if (orderByDeadline) {
+            queryRequest.indexName("responsibilityDeadlineIndex")
+                    .keyConditionExpression("responsibility = :email");
+            keyAttributes = Set.of("taskId", "responsibility", "deadline");
+        } else {
+            queryRequest.indexName("responsibilityIndex")
+                    .keyConditionExpression("responsibility = :email");
+            keyAttributes = Set.of("taskId", "responsibility");
+        }
+
+        if (projection != null) {
+            expressionAttributeNames.putAll(projection.attributeNames());
+            queryRequest.projectionExpression(projection.expression());
+        }
+
+        if (!expressionAttributeNames.isEmpty()) {
+            queryRequest.expressionAttributeNames(expressionAttributeNames);
+        }
 
-        return TaskMapper.mapToListTaskDto(queryResponse.items());
+        if (cursor != null) {
+            queryRequest.exclusiveStartKey(userTasksCursorKey(cursor, keyAttributes, email, statusPrefix));
+        }
+
+        QueryResponse queryResponse = dynamoDbClient.query(queryRequest
+                .expressionAttributeValues(expressionAttributeValues)
+                .build());
+
+        return TaskPageDto.builder()
+                .tasks(projection != null
+                        ? TaskMapper.mapToListPartialTaskDto(queryResponse.items())
+                        : TaskMapper.mapToListTaskDto(queryResponse.items()))
+                .nextCursor(queryResponse.hasLastEvaluatedKey()
+                        ? CursorCodec.encodeKey(queryResponse.lastEvaluatedKey())
+                        : null)
+                .build();
     }
 
     @Override
-    public List<TaskDto> getAllTasks() {
-        ScanRequest scanRequest = ScanRequest.builder()
-                .tableName(tasksTableName)
-                .build();
+    public TaskPageDto getAllTasks(int limit, String cursor, String fields) {
+
+        validatePageLimit(limit);
+        TaskProjection projection = TaskProjection.fromFields(fields);
+
+        // A null start key means the segment has not been read yet, an empty one that it is exhausted
+        List<Map<String, AttributeValue>> startKeys = cursor != null
+                ? CursorCodec.decodeSegments(cursor, scanSegments)
+                : Collections.nCopies(scanSegments, null);
+        int totalSegments = scanSegments;
+
+        List<Integer> activeSegments = new ArrayList<>();
+        for (int segment = 0; segment < totalSegments; segment++) {
+            Map<String, AttributeValue> startKey = startKeys.get(segment);
+            if (startKey == null || !startKey.isEmpty()) {
+                activeSegments.add(segment);
+            }
+        }
 
-        ScanResponse scanResponse = dynamoDbClient.scan(scanRequest);
+        if (activeSegments.isEmpty()) {
+            return TaskPageDto.builder()
+                    .tasks(List.of())
+                    .build();
+        }
 
-        return TaskMapper.mapToListTaskDto(scanResponse.items());
+        // Split the page across the segments so it costs one segment's round trip
+        int segmentLimit = (limit + activeSegments.size() - 1) / activeSegments.size();
+        List<CompletableFuture<ScanResponse>> scans = activeSegments.stream()
+                .map(segment -> CompletableFuture.supplyAsync(() ->
+                        scanSegment(segment, totalSegments, startKeys.get(segment), segmentLimit, projection), scanExecutor))
+                .toList();
+
+        Map<String, AttributeValue> exhausted = Map.of();
+        List<TaskDto> tasks = new ArrayList<>();
+        List<Map<String, AttributeValue>> nextKeys = new ArrayList<>(Collections.nCopies(totalSegments, exhausted));
+        for (int i = 0; i < activeSegments.size(); i++) {
+            ScanResponse scanResponse = join(scans.get(i));
+            tasks.addAll(projection != null
+                    ? TaskMapper.mapToListPartialTaskDto(scanResponse.items())
+                    : TaskMapper.mapToListTaskDto(scanResponse.items()));
+            if (scanResponse.hasLastEvaluatedKey()) {
+                nextKeys.set(activeSegments.get(i), scanResponse.lastEvaluatedKey());
+            }
+        }
+
+        boolean hasMore = nextKeys.stream().anyMatch(key -> !key.isEmpty());
+        return TaskPageDto.builder()
+                .tasks(tasks)
+                .nextCursor(hasMore ? CursorCodec.encodeSegments(nextKeys) : null)
+                .build();
     }
 
     @Override
@@ -138,121 +358,73 @@ public class TaskManagementServiceImpl implements TaskManagementService {
         String email = jwt.getClaimAsString("email");
 
         try {
-            // Define the primary key
-            Map<String, AttributeValue> key = Map.of(
-                    "taskId", AttributeValue.builder().s(id).build()
-            );
-
-            // Create the UpdateItemRequest
-            UpdateItemRequest updateItemRequest = UpdateItemRequest.builder()
-                    .tableName(tasksTableName)
-                    .key(key)
-                    .updateExpression("SET #status = :status")
-                    .conditionExpression("#status = :open AND responsibility = :email")
-                    .expressionAttributeValues(Map.of(
-                            ":status", AttributeValue.builder().s("completed").build(),
-                            ":open", AttributeValue.builder().s("open").build(),
-                            ":email", AttributeValue.builder().s(email).build()
-                    ))
-                    .expressionAttributeNames(Map.of(
-                            "#status", "status"
-                    ))
-                    .returnValues("ALL_NEW")
-                    .build();
-
-            // Execute the update
-            UpdateItemResponse updateItemResponse = dynamoDbClient.updateItem(updateItemRequest);
-            createMessageAndSendToQueue("Task has been completed", "task-complete",
-                    updateItemResponse.attributes(), "Task Completed",
-                    taskCompleteTopicArn);
+            // Execute the update, its outbox entry is relayed to the queue from the table stream
+            UpdateItemResponse updateItemResponse = dynamoDbClient.updateItem(completeTaskRequest(id, email,
+                    deadlinesOf(List.of(id)).get(id)));
+            taskReadCache.invalidate(id);
             return TaskMapper.mapToTaskDto(updateItemResponse.attributes());
         } catch (ConditionalCheckFailedException ex) {
-            throw new TaskManagementException("Invalid task status update: [completed, expired] -> completed or" +
-                    "unauthorized modification");
+            // The cached copy may predate whatever made the condition fail
+            taskReadCache.invalidate(id);
+            throw new TaskManagementException(COMPLETE_CONFLICT_MESSAGE);
         }
     }
 
     @Override
-    public TaskDto reAssignTask(String id, ReassignTaskDto request) {
+    public List<BulkItemResultDto> makeTasksAsCompleted(BulkTaskIdsDto request, Jwt jwt) {
 
-        try {
-            // Define the primary key
-            Map<String, AttributeValue> key = Map.of(
-                    "taskId", AttributeValue.builder().s(id).build()
-            );
+        String email = jwt.getClaimAsString("email");
+        Map<String, String> deadlines = deadlinesOf(request.ids());
+        return applyBulkUpdate(request.ids(), request.atomic(), id -> completeTaskRequest(id, email, deadlines.get(id)),
+                COMPLETE_CONFLICT_MESSAGE);
+    }
 
-            // Create the UpdateItemRequest
-            UpdateItemRequest updateItemRequest = UpdateItemRequest.builder()
-                    .tableName(tasksTableName)
-                    .key(key)
-                    .updateExpression("SET responsibility = :responsibility")
-                    .conditionExpression("#status = :open")
-                    .expressionAttributeValues(Map.of(
-                            ":responsibility", AttributeValue.builder().s(request.userEmail()).build(),
-                            ":open", AttributeValue.builder().s("open").build()
-                    ))
-                    .expressionAttributeNames(Map.of(
-                            "#status", "status"
-                    ))
-                    .returnValues("ALL_NEW")
-                    .build();
+    @Override
+    public TaskDto reAssignTask(String id, ReassignTaskDto request) {
 
-            // Execute the update
-            UpdateItemResponse updateItemResponse = dynamoDbClient.updateItem(updateItemRequest);
-            createMessageAndSendToQueue("Task has been reassigned", "task-reassign", updateItemResponse.attributes(),
-                    "You have been Assigned A Task", taskAssignTopicArn);
+        try {
+            // Execute the update, its outbox entry is relayed to the queue from the table stream
+            UpdateItemResponse updateItemResponse = dynamoDbClient.updateItem(reassignTaskRequest(id, request.userEmail()));
+            taskReadCache.invalidate(id);
             return TaskMapper.mapToTaskDto(updateItemResponse.attributes());
         } catch (ConditionalCheckFailedException ex) {
-            throw new TaskManagementException("Invalid task status [expired, completed] during reassignment");
+            taskReadCache.invalidate(id);
+            throw new TaskManagementException(REASSIGN_CONFLICT_MESSAGE);
         }
     }
 
     @Override
-    public TaskDto reopenTask(String id, TaskReopenDto request) {
-
-        try {
-            // Define the primary key
-            Map<String, AttributeValue> key = Map.of(
-                    "taskId", AttributeValue.builder().s(id).build()
-            );
+    public List<BulkItemResultDto> reAssignTasks(BulkReassignTaskDto request) {
 
-            // Calculate the current time + 1 hour
-            LocalDateTime currentTime = LocalDateTime.now();
-            LocalDateTime oneHourFromNow = currentTime.plusHours(1);
+        return applyBulkUpdate(request.ids(), request.atomic(), id -> reassignTaskRequest(id, request.userEmail()),
+                REASSIGN_CONFLICT_MESSAGE);
+    }
 
-            if(request.deadline().isBefore(oneHourFromNow)) {
-                throw new TaskManagementException("Deadline must be greater or equal to 1 hour.");
-            }
+    @Override
+    public TaskDto reopenTask(String id, TaskReopenDto request) {
 
-            // Create the UpdateItemRequest
-            UpdateItemRequest updateItemRequest = UpdateItemRequest.builder()
-                    .tableName(tasksTableName)
-                    .key(key)
-                    .updateExpression("SET #status = :status, deadline = :deadline, isNotifiedForApproachDeadline = :false")
-                    .conditionExpression("#status = :expired")
-                    .expressionAttributeValues(Map.of(
-                            ":status", AttributeValue.builder().s("open").build(),
-                            ":deadline", AttributeValue.builder().s(request.deadline().toString()).build(),
-                            ":expired", AttributeValue.builder().s("expired").build(),
-                            ":false", AttributeValue.builder().n("0").build()
-                    ))
-                    .expressionAttributeNames(Map.of(
-                            "#status", "status"
-                    ))
-                    .returnValues("ALL_NEW")
-                    .build();
+        validateReopenDeadline(request.deadline());
 
-            // Execute the update
-            UpdateItemResponse updateItemResponse = dynamoDbClient.updateItem(updateItemRequest);
-            createMessageAndSendToQueue("Task has been reopened", "task-reopen",
-                    updateItemResponse.attributes(), "Task Reopened",
-                    taskReopenTopicArn);
+        try {
+            // Execute the update, its outbox entry is relayed to the queue from the table stream
+            UpdateItemResponse updateItemResponse = dynamoDbClient.updateItem(reopenTaskRequest(id, request.deadline()));
+            taskReadCache.invalidate(id);
             return TaskMapper.mapToTaskDto(updateItemResponse.attributes());
         } catch (ConditionalCheckFailedException ex) {
-            throw new TaskManagementException("Invalid task status update: [open, completed] -> open");
+            taskReadCache.invalidate(id);
+            throw new TaskManagementException(REOPEN_CONFLICT_MESSAGE);
         }
     }
 
+    @Override
+    public List<BulkItemResultDto> reopenTasks(BulkTaskReopenDto request) {
+
+        validateReopenDeadline(request.deadline());
+
+        return applyBulkUpdate(request.ids(), request.atomic(), id -> reopenTaskRequest(id, request.deadline()),
+                REOPEN_CONFLICT_MESSAGE);
+    }
+
     @Override
     public TaskDto updateTaskDetails(String id, TaskDetailsUpdateDto request) {
 
@@ -264,14 +436,16 @@ public class TaskManagementServiceImpl implements TaskManagementService {
             UpdateItemRequest updateItemRequest = UpdateItemRequest.builder()
                     .tableName(tasksTableName)
                     .key(key)
-                    .updateExpression("SET #name = :name, description = :description")
+                    .updateExpression("SET #name = :name, description = :description ADD #version :one")
                     .conditionExpression("#status = :status")
                     .expressionAttributeValues(Map.of(
+                            ":one", AttributeValue.builder().n("1").build(),
                             ":status", AttributeValue.builder().s("open").build(),
                             ":name", AttributeValue.builder().s(request.name()).build(),
                             ":description", AttributeValue.builder().s(request.description()).build()
                     ))
                     .expressionAttributeNames(Map.of(
+                            "#version", "version",
                             "#status", "status",
                             "#name", "name"
                     ))
@@ -280,9 +454,11 @@ public class TaskManagementServiceImpl implements TaskManagementService {
 
             // Execute the update
             UpdateItemResponse updateItemResponse = dynamoDbClient.updateItem(updateItemRequest);
+            taskReadCache.invalidate(id);
 
             return TaskMapper.mapToTaskDto(updateItemResponse.attributes());
         } catch (ConditionalCheckFailedException ex) {
+            taskReadCache.invalidate(id);
             throw new TaskManagementException("Only open tasks can be updated");
         }
     }
@@ -299,11 +475,13 @@ public class TaskManagementServiceImpl implements TaskManagementService {
         UpdateItemRequest updateItemRequest = UpdateItemRequest.builder()
                 .tableName(tasksTableName)
                 .key(key)
-                .updateExpression("SET #comment = :comment")
+                .updateExpression("SET #comment = :comment ADD #version :one")
                 .expressionAttributeValues(Map.of(
+                        ":one", AttributeValue.builder().n("1").build(),
                         ":comment", AttributeValue.builder().s(request.comment()).build()
                 ))
                 .expressionAttributeNames(Map.of(
+                        "#version", "version",
                         "#comment", "comment"
                 ))
                 .returnValues("ALL_NEW")
@@ -311,12 +489,428 @@ public class TaskManagementServiceImpl implements TaskManagementService {
 
         // Execute the update
         UpdateItemResponse updateItemResponse = dynamoDbClient.updateItem(updateItemRequest);
+        taskReadCache.invalidate(id);
 
         return TaskMapper.mapToTaskDto(updateItemResponse.attributes());
     }
 
-    private void createMessageAndSendToQueue(String messageBody, String reason, Map<String, AttributeValue> taskDetails, String subject, String topicArn) {
-        Map<String, MessageAttributeValue> messageAttributes = SQSServiceImpl.createQueueMessage(reason, taskDetails, subject, topicArn);
-        sqsService.sendMessageToQueue(messageBody, messageAttributes, queueUrl);
+    private ScanResponse scanSegment(int segment, int totalSegments, Map<String, AttributeValue> startKey, int limit,
+                                     TaskProjection projection) {
+
+        ScanRequest.Builder scanRequest = ScanRequest.builder()
+                .tableName(tasksTableName)
+                .segment(segment)
+                .totalSegments(totalSegments)
+                .limit(limit);
+
+        if (startKey != null) {
+            scanRequest.exclusiveStartKey(startKey);
+        }
+
+        if (projection != null) {
+            scanRequest.projectionExpression(projection.expression())
+                    .expressionAttributeNames(projection.attributeNames());
+        }
+
+        return dynamoDbClient.scan(scanRequest.build());
+    }
+
+    // The deadline only changes on reopen, which needs the task to have expired, so the one read here still holds
+    // when the completion succeeds and the status/deadline key is written in the same update
+    private UpdateItemRequest completeTaskRequest(String id, String email, String deadline) {
+
+        // Define the primary key
+        Map<String, AttributeValue> key = Map.of(
+                "taskId", AttributeValue.builder().s(id).build()
+        );
+
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":one", AttributeValue.builder().n("1").build());
+        values.put(":status", AttributeValue.builder().s("completed").build());
+        values.put(":open", AttributeValue.builder().s("open").build());
+        values.put(":email", AttributeValue.builder().s(email).build());
+        values.put(":outbox", TaskEventCodec.outboxOf("task-complete", "Task Completed", taskCompleteTopicArn));
+        Map<String, String> names = new HashMap<>();
+        names.put("#outbox", TaskEventCodec.OUTBOX_ATTRIBUTE);
+        names.put("#deadlineBucket", DeadlineBuckets.ATTRIBUTE);
+        names.put("#version", "version");
+        names.put("#status", "status");
+        String set = "SET #status = :status, #outbox = :outbox";
+        String condition = "#status = :open AND responsibility = :email";
+        if (deadline != null) {
+            values.put(":deadline", AttributeValue.builder().s(deadline).build());
+            values.put(":statusDeadline", AttributeValue.builder().s(StatusDeadlineKeys.keyOf("completed", deadline)).build());
+            names.put("#statusDeadline", StatusDeadlineKeys.ATTRIBUTE);
+            set += ", #statusDeadline = :statusDeadline";
+            condition += " AND deadline = :deadline";
+        }
+
+        // Create the UpdateItemRequest
+        return UpdateItemRequest.builder()
+                .tableName(tasksTableName)
+                .key(key)
+                .updateExpression(set + " REMOVE #deadlineBucket ADD #version :one")
+                .conditionExpression(condition)
+                .expressionAttributeValues(values)
+                .expressionAttributeNames(names)
+                .returnValues("ALL_NEW")
+                .build();
+    }
+
+    private Map<String, String> deadlinesOf(List<String> ids) {
+
+        Map<String, String> deadlines = new HashMap<>();
+        for (Map<String, AttributeValue> item : batchGetChunks(new ArrayList<>(new LinkedHashSet<>(ids)), true)) {
+            if (item.get("deadline") != null) {
+                deadlines.put(item.get("taskId").s(), item.get("deadline").s());
+            }
+        }
+        return deadlines;
+    }
+
+    private UpdateItemRequest reassignTaskRequest(String id, String userEmail) {
+
+        // Define the primary key
+        Map<String, AttributeValue> key = Map.of(
+                "taskId", AttributeValue.builder().s(id).build()
+        );
+
+        // Create the UpdateItemRequest
+        return UpdateItemRequest.builder()
+                .tableName(tasksTableName)
+                .key(key)
+                .updateExpression("SET responsibility = :responsibility, #outbox = :outbox ADD #version :one")
+                .conditionExpression("#status = :open")
+                .expressionAttributeValues(Map.of(
+                        ":one", AttributeValue.builder().n("1").build(),
+                        ":responsibility", AttributeValue.builder().s(userEmail).build(),
+                        ":open", AttributeValue.builder().s("open").build(),
+                        ":outbox", TaskEventCodec.outboxOf("task-reassign", "You have been Assigned A Task", taskAssignTopicArn)
+                ))
+                .expressionAttributeNames(Map.of(
+                        "#outbox", TaskEventCodec.OUTBOX_ATTRIBUTE,
+                        "#version", "version",
+                        "#status", "status"
+                ))
+                .returnValues("ALL_NEW")
+                .build();
+    }
+
+    private UpdateItemRequest reopenTaskRequest(String id, LocalDateTime deadline) {
+
+        // Define the primary key
+        Map<String, AttributeValue> key = Map.of(
+                "taskId", AttributeValue.builder().s(id).build()
+        );
+
+        // Create the UpdateItemRequest
+        return UpdateItemRequest.builder()
+                .tableName(tasksTableName)
+                .key(key)
+                .updateExpression("SET #status = :status, deadline = :deadline, #deadlineBucket = :deadlineBucket, " +
+                        "#statusDeadline = :statusDeadline, isNotifiedForApproachDeadline = :false, #outbox = :outbox " +
+                        "ADD #version :one")
+                .conditionExpression("#status = :expired")
+                .expressionAttributeValues(Map.of(
+                        ":one", AttributeValue.builder().n("1").build(),
+                        ":status", AttributeValue.builder().s("open").build(),
+                        ":deadline", AttributeValue.builder().s(deadline.toString()).build(),
+                        ":deadlineBucket", AttributeValue.builder()
+                                .s(DeadlineBuckets.bucketOf(id, deadline, deadlineShardCount)).build(),
+                        ":statusDeadline", AttributeValue.builder()
+                                .s(StatusDeadlineKeys.keyOf("open", deadline.toString())).build(),
+                        ":expired", AttributeValue.builder().s("expired").build(),
+                        ":false", AttributeValue.builder().n("0").build(),
+                        ":outbox", TaskEventCodec.outboxOf("task-reopen", "Task Reopened", taskReopenTopicArn)
+                ))
+                .expressionAttributeNames(Map.of(
+                        "#outbox", TaskEventCodec.OUTBOX_ATTRIBUTE,
+                        "#deadlineBucket", DeadlineBuckets.ATTRIBUTE,
+                        "#statusDeadline", StatusDeadlineKeys.ATTRIBUTE,
+                        "#version", "version",
+                        "#status", "status"
+                ))
+                .returnValues("ALL_NEW")
+                .build();
+    }
+
+    private void validateReopenDeadline(LocalDateTime deadline) {
+
+        // Calculate the current time + 1 hour
+        LocalDateTime currentTime = LocalDateTime.now();
+        LocalDateTime oneHourFromNow = currentTime.plusHours(1);
+
+        if (deadline.isBefore(oneHourFromNow)) {
+            throw new TaskManagementException("Deadline must be greater or equal to 1 hour.");
+        }
+    }
+
+    private List<BulkItemResultDto> applyBulkUpdate(List<String> ids, boolean atomic,
+                                                    Function<String, UpdateItemRequest> updateRequest,
+                                                    String conditionFailureMessage) {
+
+        // A transaction may not touch the same item twice
+        List<String> uniqueIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        Map<String, Map<String, AttributeValue>> updatedTasks = new HashMap<>();
+        Map<String, String> failures = new HashMap<>();
+
+        try {
+            if (atomic) {
+                transactUpdates(uniqueIds, updateRequest, conditionFailureMessage);
+
+                // Transactions return no item images, so read the new state back for the results
+                for (Map<String, AttributeValue> item : batchGetChunks(uniqueIds, true)) {
+                    updatedTasks.put(item.get("taskId").s(), item);
+                }
+            } else {
+                // Issued all at once on the async client, the shared connection pool bounds how many run together
+                List<CompletableFuture<UpdateItemResponse>> updates = uniqueIds.stream()
+                        .map(id -> dynamoDbAsyncClient.updateItem(updateRequest.apply(id)))
+                        .toList();
+
+                for (int i = 0; i < uniqueIds.size(); i++) {
+                    try {
+                        updatedTasks.put(uniqueIds.get(i), join(updates.get(i)).attributes());
+                    } catch (ConditionalCheckFailedException ex) {
+                        failures.put(uniqueIds.get(i), conditionFailureMessage);
+                    } catch (RuntimeException ex) {
+                        // Client side failures such as timeouts are per item too, the other updates may have committed
+                        failures.put(uniqueIds.get(i), ex.getMessage() != null ? ex.getMessage() : "Update failed, please retry");
+                    }
+                }
+            }
+        } finally {
+            uniqueIds.forEach(taskReadCache::invalidate);
+        }
+
+        return uniqueIds.stream()
+                .map(id -> {
+                    Map<String, AttributeValue> item = updatedTasks.get(id);
+                    return BulkItemResultDto.builder()
+                            .taskId(id)
+                            .success(item != null)
+                            .error(item != null ? null : failures.getOrDefault(id, "Task not found"))
+                            .task(item != null ? TaskMapper.mapToTaskDto(item) : null)
+                            .build();
+                })
+                .toList();
+    }
+
+    private void transactUpdates(List<String> ids, Function<String, UpdateItemRequest> updateRequest,
+                                 String conditionFailureMessage) {
+
+        List<TransactWriteItem> transactItems = ids.stream()
+                .map(id -> TransactWriteItem.builder()
+                        .update(toTransactUpdate(updateRequest.apply(id)))
+                        .build())
+                .toList();
+
+        try {
+            dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder()
+                    .transactItems(transactItems)
+                    .build());
+        } catch (TransactionCanceledException ex) {
+            List<String> failedIds = new ArrayList<>();
+            List<CancellationReason> reasons = ex.cancellationReasons();
+            for (int i = 0; i < reasons.size() && i < ids.size(); i++) {
+                if ("ConditionalCheckFailed".equals(reasons.get(i).code())) {
+                    failedIds.add(ids.get(i));
+                }
+            }
+
+            if (failedIds.isEmpty()) {
+                throw new TaskManagementException("Bulk update was cancelled, please retry");
+            }
+            throw new TaskManagementException(conditionFailureMessage + " for tasks " + failedIds);
+        }
+    }
+
+    private static Update toTransactUpdate(UpdateItemRequest request) {
+
+        return Update.builder()
+                .tableName(request.tableName())
+                .key(request.key())
+                .updateExpression(request.updateExpression())
+                .conditionExpression(request.conditionExpression())
+                .expressionAttributeNames(request.expressionAttributeNames())
+                .expressionAttributeValues(request.expressionAttributeValues())
+                .build();
+    }
+
+    private Map<String, AttributeValue> buildTaskItem(TasksCreationDto request, String email) {
+
+        String taskId = UUID.randomUUID().toString();
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("taskId", AttributeValue.builder().s(taskId).build());
+        item.put("name", AttributeValue.builder().s(request.name()).build());
+        item.put("description", AttributeValue.builder().s(request.description()).build());
+        item.put("status", AttributeValue.builder().s(TaskStatus.OPEN.getName()).build());
+        item.put("responsibility", AttributeValue.builder().s(request.responsibility()).build());
+        item.put("deadline", AttributeValue.builder().s(request.deadline().toString()).build());
+        item.put("assignedBy", AttributeValue.builder().s(email).build());
+        item.put("isNotifiedForApproachDeadline", AttributeValue.builder().n("0").build());
+        item.put("version", AttributeValue.builder().n("1").build());
+        item.put(DeadlineBuckets.ATTRIBUTE, AttributeValue.builder()
+                .s(DeadlineBuckets.bucketOf(taskId, request.deadline(), deadlineShardCount)).build());
+        item.put(StatusDeadlineKeys.ATTRIBUTE, AttributeValue.builder()
+                .s(StatusDeadlineKeys.keyOf(TaskStatus.OPEN.getName(), request.deadline().toString())).build());
+        return item;
+    }
+
+    // Completes with the task ids that could not be written, mapped to the reason
+    private CompletableFuture<Map<String, String>> batchWriteChunk(List<Map<String, AttributeValue>> items) {
+
+        List<WriteRequest> writeRequests = items.stream()
+                .map(item -> WriteRequest.builder()
+                        .putRequest(PutRequest.builder().item(item).build())
+                        .build())
+                .toList();
+
+        return batchWriteRemaining(Map.of(tasksTableName, writeRequests), 0);
+    }
+
+    private CompletableFuture<Map<String, String>> batchWriteRemaining(Map<String, List<WriteRequest>> requestItems, int attempt) {
+
+        if (requestItems.isEmpty()) {
+            return CompletableFuture.completedFuture(Map.of());
+        }
+        if (attempt > MAX_BATCH_RETRIES) {
+            return CompletableFuture.completedFuture(failedWrites(requestItems, "Request throttled, please retry"));
+        }
+
+        return afterBackoff(attempt)
+                .thenCompose(ignored -> dynamoDbAsyncClient.batchWriteItem(BatchWriteItemRequest.builder()
+                        .requestItems(requestItems)
+                        .build()))
+                .thenCompose(response -> batchWriteRemaining(response.unprocessedItems(), attempt + 1))
+                .exceptionally(ex -> {
+                    if (causeOf(ex) instanceof DynamoDbException cause) {
+                        return failedWrites(requestItems, cause.getMessage());
+                    }
+                    throw new CompletionException(causeOf(ex));
+                });
+    }
+
+    private Map<String, String> failedWrites(Map<String, List<WriteRequest>> requestItems, String reason) {
+
+        Map<String, String> failures = new HashMap<>();
+        for (WriteRequest writeRequest : requestItems.getOrDefault(tasksTableName, List.of())) {
+            failures.put(writeRequest.putRequest().item().get("taskId").s(), reason);
+        }
+        return failures;
+    }
+
+    private List<Map<String, AttributeValue>> batchGetChunks(List<String> ids, boolean consistentRead) {
+
+        List<CompletableFuture<List<Map<String, AttributeValue>>>> chunks = partition(ids, BATCH_GET_SIZE).stream()
+                .map(chunk -> batchGetChunk(chunk, consistentRead))
+                .toList();
+
+        List<Map<String, AttributeValue>> items = new ArrayList<>();
+        for (CompletableFuture<List<Map<String, AttributeValue>>> chunk : chunks) {
+            items.addAll(join(chunk));
+        }
+        return items;
+    }
+
+    private CompletableFuture<List<Map<String, AttributeValue>>> batchGetChunk(List<String> ids, boolean consistentRead) {
+
+        List<Map<String, AttributeValue>> keys = ids.stream()
+                .map(id -> Map.of("taskId", AttributeValue.builder().s(id).build()))
+                .toList();
+
+        Map<String, KeysAndAttributes> requestItems = Map.of(tasksTableName, KeysAndAttributes.builder()
+                .keys(keys)
+                .consistentRead(consistentRead)
+                .build());
+
+        return batchGetRemaining(requestItems, new ArrayList<>(), 0);
+    }
+
+    private CompletableFuture<List<Map<String, AttributeValue>>> batchGetRemaining(Map<String, KeysAndAttributes> requestItems,
+                                                                                  List<Map<String, AttributeValue>> items,
+                                                                                  int attempt) {
+
+        if (requestItems.isEmpty()) {
+            return CompletableFuture.completedFuture(items);
+        }
+        if (attempt > MAX_BATCH_RETRIES) {
+            return CompletableFuture.failedFuture(new TaskManagementException("Request throttled, please retry"));
+        }
+
+        return afterBackoff(attempt)
+                .thenCompose(ignored -> dynamoDbAsyncClient.batchGetItem(BatchGetItemRequest.builder()
+                        .requestItems(requestItems)
+                        .build()))
+                .thenCompose(response -> {
+                    items.addAll(response.responses().getOrDefault(tasksTableName, List.of()));
+                    return batchGetRemaining(response.unprocessedKeys(), items, attempt + 1);
+                });
+    }
+
+    private void validatePageLimit(int limit) {
+
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new TaskManagementException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+    }
+
+    // A cursor issued for another index, user or status would be rejected by DynamoDB, so it is refused up front
+    private static Map<String, AttributeValue> userTasksCursorKey(String cursor, Set<String> keyAttributes,
+                                                                  String email, String statusPrefix) {
+
+        Map<String, AttributeValue> key = CursorCodec.decodeKey(cursor, keyAttributes);
+        if (!email.equals(key.get("responsibility").s())
+                || (statusPrefix != null && !key.get(StatusDeadlineKeys.ATTRIBUTE).s().startsWith(statusPrefix))) {
+            throw new TaskManagementException("Invalid cursor");
+        }
+        return key;
+    }
+
+    private TaskStatus parseStatus(String status) {
+
+        try {
+            return TaskStatus.fromValue(status);
+        } catch (IllegalArgumentException ex) {
+            throw new TaskManagementException("Unknown task status: " + status);
+        }
+    }
+
+    // Exponential backoff with jitter for throttled batch items, waited out on a timer instead of a sleeping thread
+    private static CompletableFuture<Void> afterBackoff(int attempt) {
+
+        if (attempt == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        long delay = Math.min(25L << attempt, 1000L);
+        long jittered = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        return CompletableFuture.runAsync(() -> {
+        }, CompletableFuture.delayedExecutor(jittered, TimeUnit.MILLISECONDS));
+    }
+
+    private static Throwable causeOf(Throwable ex) {
+        return ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+    }
+
+    private static <T> List<List<T>> partition(List<T> items, int size) {
+
+        List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < items.size(); i += size) {
+            chunks.add(items.subList(i, Math.min(i + size, items.size())));
+        }
+        return chunks;
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
     }
 }
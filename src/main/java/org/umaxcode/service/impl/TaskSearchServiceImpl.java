@@ -0,0 +1,152 @@
+package org.umaxcode.service.impl;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.umaxcode.domain.dto.response.TaskBatchDto;
+import org.umaxcode.domain.dto.response.TaskSearchDto;
+import org.umaxcode.exception.TaskManagementException;
+import org.umaxcode.search.SearchHit;
+import org.umaxcode.search.SearchResult;
+import org.umaxcode.search.TaskSearchDeltas;
+import org.umaxcode.search.TaskSearchSnapshot;
+import org.umaxcode.search.TaskSearchSnapshotWriter;
+import org.umaxcode.service.TaskManagementService;
+import org.umaxcode.service.TaskSearchService;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class TaskSearchServiceImpl implements TaskSearchService {
+
+    private static final int MAX_SEARCH_RESULTS = 100;
+
+    private final S3Client s3Client;
+    private final TaskManagementService taskManagementService;
+    private final String bucket;
+    private final String key;
+    private final long refreshNanos;
+
+    private TaskSearchSnapshot snapshot = TaskSearchSnapshot.empty();
+    private String snapshotETag;
+    private long appliedSequence;
+    private Path snapshotFile;
+    private long lastRefresh;
+    private boolean refreshed;
+
+    public TaskSearchServiceImpl(S3Client s3Client, TaskManagementService taskManagementService,
+                                 @Value("${application.search.bucket}") String bucket,
+                                 @Value("${application.search.key}") String key,
+                                 @Value("${application.search.refresh-seconds}") long refreshSeconds) {
+        this.s3Client = s3Client;
+        this.taskManagementService = taskManagementService;
+        this.bucket = bucket;
+        this.key = key;
+        this.refreshNanos = TimeUnit.SECONDS.toNanos(refreshSeconds);
+    }
+
+    @Override
+    public TaskSearchDto searchTasks(String query, int limit) {
+
+        if (query == null || query.isBlank()) {
+            throw new TaskManagementException("Search query is required");
+        }
+        if (limit < 1 || limit > MAX_SEARCH_RESULTS) {
+            throw new TaskManagementException("Limit must be between 1 and " + MAX_SEARCH_RESULTS);
+        }
+
+        SearchResult result = currentSnapshot().search(query, limit);
+        if (result.hits().isEmpty()) {
+            return TaskSearchDto.builder()
+                    .totalHits(0)
+                    .tasks(List.of())
+                    .build();
+        }
+
+        // Batch get keeps the ranking order and drops tasks deleted since the snapshot was written
+        TaskBatchDto tasks = taskManagementService.batchGetTasks(result.hits().stream()
+                .map(SearchHit::taskId)
+                .toList());
+        return TaskSearchDto.builder()
+                .totalHits(result.totalHits())
+                .tasks(tasks.tasks())
+                .build();
+    }
+
+    // The stream handler publishes deltas and periodically compacts them into a new snapshot. A container downloads
+    // the snapshot only when its ETag changes and merges the deltas it has not applied yet on top of it.
+    private synchronized TaskSearchSnapshot currentSnapshot() {
+
+        long now = System.nanoTime();
+        if (refreshed && now - lastRefresh < refreshNanos) {
+            return snapshot;
+        }
+        refreshed = true;
+        lastRefresh = now;
+
+        try {
+            HeadObjectResponse base = s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .build());
+            if (!base.eTag().equals(snapshotETag)) {
+                Path file = newSnapshotFile();
+                GetObjectResponse response = s3Client.getObject(GetObjectRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .build(), ResponseTransformer.toFile(file));
+
+                replaceSnapshot(TaskSearchSnapshot.open(file), file);
+                snapshotETag = response.eTag();
+                appliedSequence = TaskSearchDeltas.sequenceOf(response.metadata());
+                System.out.println("Loaded task search snapshot " + snapshotETag);
+            }
+        } catch (NoSuchKeyException e) {
+            System.out.println("No task search snapshot published yet");
+        } catch (IOException e) {
+            System.out.println("Failed to load task search snapshot: " + e.getMessage());
+            return snapshot;
+        }
+
+        try {
+            NavigableMap<Long, String> deltas = TaskSearchDeltas.list(s3Client, bucket, key).tailMap(appliedSequence, false);
+            if (!deltas.isEmpty()) {
+                Path file = newSnapshotFile();
+                TaskSearchSnapshotWriter.merge(snapshot, TaskSearchDeltas.read(s3Client, bucket, deltas.values()), file);
+                replaceSnapshot(TaskSearchSnapshot.open(file), file);
+                appliedSequence = deltas.lastKey();
+            }
+        } catch (IOException | NoSuchKeyException e) {
+            // A compaction removed a delta after it was listed, the next refresh starts from the new snapshot
+            System.out.println("Failed to apply task search deltas: " + e.getMessage());
+        }
+        return snapshot;
+    }
+
+    private static Path newSnapshotFile() {
+        return Path.of(System.getProperty("java.io.tmpdir"), "tasks-search-" + UUID.randomUUID() + ".idx");
+    }
+
+    // Searches still reading the old mapping keep it alive after the file is unlinked
+    private void replaceSnapshot(TaskSearchSnapshot newSnapshot, Path file) throws IOException {
+
+        Path previousFile = snapshotFile;
+        snapshot = newSnapshot;
+        snapshotFile = file;
+        if (previousFile != null) {
+            Files.deleteIfExists(previousFile);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.umaxcode.service.impl;
+
+import org.springframework.stereotype.Service;
+import org.umaxcode.domain.dto.response.TaskCountsDto;
+import org.umaxcode.domain.dto.response.TaskSummaryDto;
+import org.umaxcode.exception.TaskManagementException;
+import org.umaxcode.service.TaskSummaryService;
+import org.umaxcode.utils.TaskCounters;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Service
+public class TaskSummaryServiceImpl implements TaskSummaryService {
+
+    private static final int MAX_BATCH_RETRIES = 5;
+
+    private final DynamoDbClient dynamoDbClient;
+    private final String countersTableName;
+
+    public TaskSummaryServiceImpl(DynamoDbClient dynamoDbClient) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.countersTableName = System.getenv("TASK_COUNTERS_TABLE_NAME");
+    }
+
+    @Override
+    public TaskSummaryDto getSummary(String responsibility, String assignedBy) {
+
+        List<String> allCounterIds = TaskCounters.allCounterIds();
+        List<String> counterIds = new ArrayList<>(allCounterIds);
+        if (responsibility != null) {
+            counterIds.add(TaskCounters.responsibilityCounter(responsibility));
+        }
+        if (assignedBy != null) {
+            counterIds.add(TaskCounters.assignedByCounter(assignedBy));
+        }
+
+        List<Map<String, AttributeValue>> keys = counterIds.stream()
+                .map(id -> Map.of("counterId", AttributeValue.builder().s(id).build()))
+                .toList();
+
+        Map<String, KeysAndAttributes> requestItems = Map.of(countersTableName, KeysAndAttributes.builder()
+                .keys(keys)
+                .build());
+
+        // A handful of keys is always one request, the loop only picks up throttled leftovers
+        Map<String, Map<String, AttributeValue>> counters = new HashMap<>();
+        for (int attempt = 0; !requestItems.isEmpty(); attempt++) {
+            // Reporting zeros for counters that were not read would under-report, so give up loudly instead
+            if (attempt > MAX_BATCH_RETRIES) {
+                throw new TaskManagementException("Request throttled, please retry");
+            }
+            if (attempt > 0) {
+                backoff(attempt);
+            }
+
+            BatchGetItemResponse response = dynamoDbClient.batchGetItem(BatchGetItemRequest.builder()
+                    .requestItems(requestItems)
+                    .build());
+
+            for (Map<String, AttributeValue> item : response.responses().getOrDefault(countersTableName, List.of())) {
+                counters.put(item.get("counterId").s(), item);
+            }
+            requestItems = response.unprocessedKeys();
+        }
+
+        return TaskSummaryDto.builder()
+                .all(toCounts(allCounterIds.stream().map(counters::get).toList()))
+                .responsibility(responsibility != null
+                        ? toCounts(List.of(counters.get(TaskCounters.responsibilityCounter(responsibility))))
+                        : null)
+                .assignedBy(assignedBy != null
+                        ? toCounts(List.of(counters.get(TaskCounters.assignedByCounter(assignedBy))))
+                        : null)
+                .build();
+    }
+
+    // Exponential backoff with jitter for throttled counter reads
+    private static void backoff(int attempt) {
+
+        long delay = Math.min(25L << attempt, 1000L);
+        try {
+            Thread.sleep(delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TaskManagementException("Request interrupted");
+        }
+    }
+
+    // Sums the given counter items, missing ones count as zero
+    private static TaskCountsDto toCounts(List<Map<String, AttributeValue>> counters) {
+
+        long open = countOf(counters, "open");
+        long completed = countOf(counters, "completed");
+        long expired = countOf(counters, "expired");
+        return TaskCountsDto.builder()
+                .open(open)
+                .completed(completed)
+                .expired(expired)
+                .total(open + completed + expired)
+                .build();
+    }
+
+    private static long countOf(List<Map<String, AttributeValue>> counters, String status) {
+
+        long count = 0;
+        for (Map<String, AttributeValue> counter : counters) {
+            if (counter != null && counter.containsKey(status)) {
+                count += Long.parseLong(counter.get(status).n());
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,98 @@
+package org.umaxcode.utils;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import software.amazon.awssdk.auth.credentials.EnvironmentVariableCredentialsProvider;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.cognitoidentityprovider.CognitoIdentityProviderClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.sfn.SfnClient;
+import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.sqs.SqsClient;
+
+import java.time.Duration;
+
+// Lambda handlers share one tuned connection pool and skip the region and credentials provider chain lookups
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class AwsClients {
+
+    private static final SdkHttpClient HTTP_CLIENT = ApacheHttpClient.builder()
+            .maxConnections(intEnv("AWS_HTTP_MAX_CONNECTIONS", 50))
+            .connectionTimeout(Duration.ofMillis(intEnv("AWS_HTTP_CONNECTION_TIMEOUT_MS", 2000)))
+            .connectionAcquisitionTimeout(Duration.ofMillis(intEnv("AWS_HTTP_ACQUIRE_TIMEOUT_MS", 5000)))
+            .socketTimeout(Duration.ofMillis(intEnv("AWS_HTTP_SOCKET_TIMEOUT_MS", 5000)))
+            .tcpKeepAlive(true)
+            .build();
+
+    private static final ClientOverrideConfiguration OVERRIDE_CONFIGURATION = ClientOverrideConfiguration.builder()
+            .apiCallTimeout(Duration.ofMillis(intEnv("AWS_API_CALL_TIMEOUT_MS", 10000)))
+            .build();
+
+    public static DynamoDbClient dynamoDb() {
+        return DynamoDbClient.builder()
+                .region(region())
+                .credentialsProvider(EnvironmentVariableCredentialsProvider.create())
+                .httpClient(HTTP_CLIENT)
+                .overrideConfiguration(OVERRIDE_CONFIGURATION)
+                .build();
+    }
+
+    public static SqsClient sqs() {
+        return SqsClient.builder()
+                .region(region())
+                .credentialsProvider(EnvironmentVariableCredentialsProvider.create())
+                .httpClient(HTTP_CLIENT)
+                .overrideConfiguration(OVERRIDE_CONFIGURATION)
+                .build();
+    }
+
+    public static SnsClient sns() {
+        return SnsClient.builder()
+                .region(region())
+                .credentialsProvider(EnvironmentVariableCredentialsProvider.create())
+                .httpClient(HTTP_CLIENT)
+                .overrideConfiguration(OVERRIDE_CONFIGURATION)
+                .build();
+    }
+
+    public static SfnClient sfn() {
+        return SfnClient.builder()
+                .region(region())
+                .credentialsProvider(EnvironmentVariableCredentialsProvider.create())
+                .httpClient(HTTP_CLIENT)
+                .overrideConfiguration(OVERRIDE_CONFIGURATION)
+                .build();
+    }
+
+    public static S3Client s3() {
+        return S3Client.builder()
+                .region(region())
+                .credentialsProvider(EnvironmentVariableCredentialsProvider.create())
+                .httpClient(HTTP_CLIENT)
+                .overrideConfiguration(OVERRIDE_CONFIGURATION)
+                .build();
+    }
+
+    public static CognitoIdentityProviderClient cognito() {
+        return CognitoIdentityProviderClient.builder()
+                .region(region())
+                .credentialsProvider(EnvironmentVariableCredentialsProvider.create())
+                .httpClient(HTTP_CLIENT)
+                .overrideConfiguration(OVERRIDE_CONFIGURATION)
+                .build();
+    }
+
+    private static Region region() {
+        return Region.of(System.getenv("AWS_REGION"));
+    }
+
+    private static int intEnv(String name, int defaultValue) {
+
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value);
+    }
+}
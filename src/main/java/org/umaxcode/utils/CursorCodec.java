@@ -0,0 +1,134 @@
+package org.umaxcode.utils;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.umaxcode.exception.TaskManagementException;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class CursorCodec {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final TypeReference<Map<String, Map<String, String>>> KEY_TYPE = new TypeReference<>() {
+    };
+
+    private static final TypeReference<List<Map<String, Map<String, String>>>> SEGMENTS_TYPE = new TypeReference<>() {
+    };
+
+    public static String encodeKey(Map<String, AttributeValue> key) {
+
+        return encode(toJsonKey(key));
+    }
+
+    public static Map<String, AttributeValue> decodeKey(String cursor) {
+
+        return fromJsonKey(decode(cursor, KEY_TYPE));
+    }
+
+    // The start key of an index query must carry exactly that index's key attributes
+    public static Map<String, AttributeValue> decodeKey(String cursor, Set<String> keyAttributes) {
+
+        Map<String, AttributeValue> key = decodeKey(cursor);
+        if (!key.keySet().equals(keyAttributes)) {
+            throw new TaskManagementException("Invalid cursor");
+        }
+        return key;
+    }
+
+    // An empty key marks a segment that has been scanned to the end
+    public static String encodeSegments(List<Map<String, AttributeValue>> segmentKeys) {
+
+        List<Map<String, Map<String, String>>> segments = new ArrayList<>();
+        for (Map<String, AttributeValue> key : segmentKeys) {
+            segments.add(toJsonKey(key));
+        }
+        return encode(segments);
+    }
+
+    public static List<Map<String, AttributeValue>> decodeSegments(String cursor) {
+
+        List<Map<String, Map<String, String>>> segments = decode(cursor, SEGMENTS_TYPE);
+        if (segments == null || segments.isEmpty()) {
+            throw new TaskManagementException("Invalid cursor");
+        }
+
+        List<Map<String, AttributeValue>> segmentKeys = new ArrayList<>();
+        for (Map<String, Map<String, String>> segment : segments) {
+            segmentKeys.add(fromJsonKey(segment));
+        }
+        return segmentKeys;
+    }
+
+    // Segments of a scan with another segment count do not cover the same key ranges, so such a cursor cannot resume
+    public static List<Map<String, AttributeValue>> decodeSegments(String cursor, int totalSegments) {
+
+        List<Map<String, AttributeValue>> segmentKeys = decodeSegments(cursor);
+        if (segmentKeys.size() != totalSegments) {
+            throw new TaskManagementException("Invalid cursor");
+        }
+        return segmentKeys;
+    }
+
+    private static String encode(Object value) {
+
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(OBJECT_MAPPER.writeValueAsBytes(value));
+        } catch (IOException e) {
+            throw new TaskManagementException("Unable to encode cursor");
+        }
+    }
+
+    private static <T> T decode(String cursor, TypeReference<T> type) {
+
+        try {
+            return OBJECT_MAPPER.readValue(Base64.getUrlDecoder().decode(cursor), type);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new TaskManagementException("Invalid cursor");
+        }
+    }
+
+    private static Map<String, Map<String, String>> toJsonKey(Map<String, AttributeValue> key) {
+
+        Map<String, Map<String, String>> jsonKey = new HashMap<>();
+        key.forEach((name, value) -> {
+            if (value.s() != null) {
+                jsonKey.put(name, Map.of("S", value.s()));
+            } else if (value.n() != null) {
+                jsonKey.put(name, Map.of("N", value.n()));
+            } else {
+                throw new TaskManagementException("Unsupported key attribute: " + name);
+            }
+        });
+        return jsonKey;
+    }
+
+    private static Map<String, AttributeValue> fromJsonKey(Map<String, Map<String, String>> jsonKey) {
+
+        if (jsonKey == null) {
+            throw new TaskManagementException("Invalid cursor");
+        }
+
+        Map<String, AttributeValue> key = new HashMap<>();
+        jsonKey.forEach((name, value) -> {
+            if (value != null && value.get("S") != null) {
+                key.put(name, AttributeValue.builder().s(value.get("S")).build());
+            } else if (value != null && value.get("N") != null) {
+                key.put(name, AttributeValue.builder().n(value.get("N")).build());
+            } else {
+                throw new TaskManagementException("Invalid cursor");
+            }
+        });
+        return key;
+    }
+}
@@ -0,0 +1,83 @@
+package org.umaxcode.utils;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class DeadlineBuckets {
+
+    public static final String ATTRIBUTE = "deadlineBucket";
+    // Sweep checkpoint item holding the earliest hour whose due buckets are not all swept yet
+    public static final String DUE_SWEEP_MARK_ID = "deadline-due#lowWaterMark";
+
+    private static final DateTimeFormatter HOUR_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH");
+    private static final int DEFAULT_SHARD_COUNT = 8;
+
+    // Writers and the sweeper must agree on this, so it comes from the shared DEADLINE_SHARD_COUNT variable
+    public static int shardCount() {
+
+        String shardCount = System.getenv("DEADLINE_SHARD_COUNT");
+        return shardCount == null || shardCount.isBlank() ? DEFAULT_SHARD_COUNT : Integer.parseInt(shardCount);
+    }
+
+    // Hour of the deadline plus a stable hash of the task id, spreading each hour over shardCount partitions
+    public static String bucketOf(String taskId, LocalDateTime deadline, int shardCount) {
+        return HOUR_FORMAT.format(deadline) + "#" + Math.floorMod(taskId.hashCode(), shardCount);
+    }
+
+    public static String hourOf(LocalDateTime time) {
+        return HOUR_FORMAT.format(time);
+    }
+
+    public static String hourOfBucket(String bucket) {
+        return bucket.substring(0, bucket.indexOf('#'));
+    }
+
+    public static LocalDateTime startOfHour(String hour) {
+        return LocalDateTime.parse(hour + ":00");
+    }
+
+    // Only ever moves the mark back, so the due sweep revisits the hour of a task written into an older bucket
+    public static void lowerDueSweepMark(DynamoDbClient dynamoDbClient, String checkpointsTableName, String hour) {
+
+        try {
+            dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(checkpointsTableName)
+                    .key(Map.of("checkpointId", AttributeValue.builder().s(DUE_SWEEP_MARK_ID).build()))
+                    .updateExpression("SET #hour = :hour")
+                    .conditionExpression("attribute_not_exists(#hour) OR #hour > :hour")
+                    .expressionAttributeValues(Map.of(
+                            ":hour", AttributeValue.builder().s(hour).build()
+                    ))
+                    .expressionAttributeNames(Map.of(
+                            "#hour", "hour"
+                    ))
+                    .build());
+        } catch (ConditionalCheckFailedException e) {
+            // The mark is already at or before this hour
+        }
+    }
+
+    // Every shard of every hour bucket from the hour of from up to and including the hour of to
+    public static List<String> bucketsBetween(LocalDateTime from, LocalDateTime to, int shardCount) {
+
+        List<String> buckets = new ArrayList<>();
+        for (LocalDateTime hour = from.truncatedTo(ChronoUnit.HOURS); !hour.isAfter(to); hour = hour.plusHours(1)) {
+            for (int shard = 0; shard < shardCount; shard++) {
+                buckets.add(HOUR_FORMAT.format(hour) + "#" + shard);
+            }
+        }
+        return buckets;
+    }
+}
@@ -0,0 +1,47 @@
+package org.umaxcode.utils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Writes CloudWatch embedded metric format lines, which Lambda turns into metrics without any API calls
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class MetricsLogger {
+
+    private static final String NAMESPACE = "TaskManagementSystem";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    public static void emit(Map<String, String> dimensions, Metric... metrics) {
+
+        List<Map<String, String>> definitions = new ArrayList<>();
+        Map<String, Object> log = new LinkedHashMap<>(dimensions);
+        for (Metric metric : metrics) {
+            definitions.add(Map.of("Name", metric.name(), "Unit", metric.unit()));
+            log.put(metric.name(), metric.value());
+        }
+
+        log.put("_aws", Map.of(
+                "Timestamp", System.currentTimeMillis(),
+                "CloudWatchMetrics", List.of(Map.of(
+                        "Namespace", NAMESPACE,
+                        "Dimensions", List.of(new ArrayList<>(dimensions.keySet())),
+                        "Metrics", definitions
+                ))
+        ));
+
+        try {
+            System.out.println(OBJECT_MAPPER.writeValueAsString(log));
+        } catch (JsonProcessingException e) {
+            System.err.println("Failed to write metrics: " + e.getMessage());
+        }
+    }
+
+    public record Metric(String name, double value, String unit) {
+    }
+}
@@ -0,0 +1,216 @@
+package org.umaxcode.utils;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class NotificationDigests {
+
+    private static final String DEFAULT_REASONS = "task-creation,task-reassign,task-reopen,task-complete";
+    private static final long DEFAULT_WINDOW_SECONDS = 900;
+    private static final long EXPIRY_SECONDS = 7 * 24 * 60 * 60;
+    private static final long HOUR_SECONDS = 60 * 60;
+    private static final int MAX_DESCRIPTION_LENGTH = 200;
+    private static final int MAX_SUBJECT_LENGTH = 100;
+    private static final int MAX_ENTRY_LENGTH = 2000;
+    private static final int DEFAULT_MAX_ENTRIES = 50;
+
+    // Keeps a full digest under the 256 KB SNS message and 400 KB DynamoDB item limits, whatever is configured
+    private static final int MAX_ENTRIES_LIMIT = 100;
+
+    public static boolean enabled() {
+        return Boolean.parseBoolean(System.getenv("NOTIFICATION_DIGEST_ENABLED"));
+    }
+
+    public static long windowSeconds() {
+
+        String windowSeconds = System.getenv("NOTIFICATION_DIGEST_WINDOW_SECONDS");
+        return windowSeconds == null || windowSeconds.isBlank() ? DEFAULT_WINDOW_SECONDS : Long.parseLong(windowSeconds);
+    }
+
+    // Reasons listed here are buffered, anything else is still published straight away
+    public static Set<String> reasons() {
+
+        String reasons = System.getenv().getOrDefault("NOTIFICATION_DIGEST_REASONS", DEFAULT_REASONS);
+        return Arrays.stream(reasons.split(","))
+                .map(String::trim)
+                .filter(reason -> !reason.isEmpty())
+                .collect(Collectors.toSet());
+    }
+
+    public static int maxEntries() {
+
+        String maxEntries = System.getenv("NOTIFICATION_DIGEST_MAX_ENTRIES");
+        int configured = maxEntries == null || maxEntries.isBlank() ? DEFAULT_MAX_ENTRIES : Integer.parseInt(maxEntries);
+        return Math.clamp(configured, 1, MAX_ENTRIES_LIMIT);
+    }
+
+    // One open digest item per recipient and reason. Events keep being appended to it until it is flushed, also while
+    // a rate capped digest is deferred, and the next event after a flush opens a new window.
+    public static String digestId(String recipient, String reason) {
+        return recipient + "#" + reason;
+    }
+
+    // A full digest rolls over to the next part, each part is flushed as its own message
+    public static String digestId(String recipient, String reason, int part) {
+        return part == 0 ? digestId(recipient, reason) : digestId(recipient, reason) + "#" + part;
+    }
+
+    public static String entryOf(String name, String description, String deadline, String receiver, String assignedBy) {
+
+        String shortDescription = description != null && description.length() > MAX_DESCRIPTION_LENGTH
+                ? description.substring(0, MAX_DESCRIPTION_LENGTH) + "..."
+                : description;
+        String entry = String.format("Task name: %s\nTask description: %s\nTask deadline: %s\nAssigned to: %s\nAssigned by: %s",
+                name, shortDescription, deadline, receiver, assignedBy);
+        return entry.length() > MAX_ENTRY_LENGTH ? entry.substring(0, MAX_ENTRY_LENGTH) + "..." : entry;
+    }
+
+    // The message id guards against SQS redeliveries appending the same event twice
+    public static void append(DynamoDbClient dynamoDbClient, String tableName, String recipient, String reason,
+                              String topicArn, String subject, String messageId, String entry, long nowSeconds) {
+
+        long window = windowSeconds();
+        long windowStart = nowSeconds - Math.floorMod(nowSeconds, window);
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":recipient", AttributeValue.builder().s(recipient).build());
+        values.put(":reason", AttributeValue.builder().s(reason).build());
+        values.put(":topicArn", AttributeValue.builder().s(topicArn).build());
+        values.put(":subject", AttributeValue.builder().s(subject).build());
+        values.put(":windowEnd", AttributeValue.builder().n(String.valueOf(windowStart + window)).build());
+        values.put(":expiresAt", AttributeValue.builder().n(String.valueOf(nowSeconds + EXPIRY_SECONDS)).build());
+        values.put(":entry", AttributeValue.builder().l(AttributeValue.builder().s(entry).build()).build());
+        values.put(":empty", AttributeValue.builder().l(List.of()).build());
+        values.put(":one", AttributeValue.builder().n("1").build());
+        values.put(":messageId", AttributeValue.builder().s(messageId).build());
+        values.put(":messageIds", AttributeValue.builder().ss(messageId).build());
+        values.put(":maxEntries", AttributeValue.builder().n(String.valueOf(maxEntries())).build());
+
+        // Parts are tried in order, a redelivery walks the same full parts and stops at the one holding its message id
+        for (int part = 0; ; part++) {
+            try {
+                dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                        .tableName(tableName)
+                        .key(Map.of("digestId", AttributeValue.builder().s(digestId(recipient, reason, part)).build()))
+                        .updateExpression("SET #recipient = :recipient, #reason = :reason, topicArn = :topicArn, " +
+                                "#subject = :subject, windowEnd = if_not_exists(windowEnd, :windowEnd), expiresAt = :expiresAt, " +
+                                "#entries = list_append(if_not_exists(#entries, :empty), :entry) " +
+                                "ADD eventCount :one, messageIds :messageIds")
+                        .conditionExpression("NOT contains(messageIds, :messageId) AND " +
+                                "(attribute_not_exists(eventCount) OR eventCount < :maxEntries)")
+                        .expressionAttributeValues(values)
+                        .expressionAttributeNames(Map.of(
+                                "#recipient", "recipient",
+                                "#reason", "reason",
+                                "#subject", "subject",
+                                "#entries", "entries"
+                        ))
+                        .build());
+                return;
+            } catch (ConditionalCheckFailedException e) {
+                if (containsMessage(dynamoDbClient, tableName, digestId(recipient, reason, part), messageId)) {
+                    System.out.println("Notification " + messageId + " is already in the digest for " + recipient);
+                    return;
+                }
+            }
+        }
+    }
+
+    private static boolean containsMessage(DynamoDbClient dynamoDbClient, String tableName, String digestId,
+                                           String messageId) {
+
+        Map<String, AttributeValue> item = dynamoDbClient.getItem(GetItemRequest.builder()
+                .tableName(tableName)
+                .key(Map.of("digestId", AttributeValue.builder().s(digestId).build()))
+                .projectionExpression("messageIds")
+                .consistentRead(true)
+                .build()).item();
+        AttributeValue messageIds = item == null ? null : item.get("messageIds");
+        return messageIds != null && messageIds.ss().contains(messageId);
+    }
+
+    // Splits digests written before the entry cap into messages that fit the SNS limit
+    public static List<List<String>> batches(List<String> entries) {
+
+        int maxEntries = maxEntries();
+        List<List<String>> batches = new ArrayList<>();
+        for (int from = 0; from < entries.size(); from += maxEntries) {
+            batches.add(entries.subList(from, Math.min(from + maxEntries, entries.size())));
+        }
+        return batches;
+    }
+
+    // Counts digests sent to the recipient in the current hour, refusing once the cap is reached
+    public static boolean reserveRateSlot(DynamoDbClient dynamoDbClient, String tableName, String recipient,
+                                          int maxPerHour, long nowSeconds) {
+
+        long hourStart = nowSeconds - Math.floorMod(nowSeconds, HOUR_SECONDS);
+        try {
+            dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(tableName)
+                    .key(Map.of("digestId", AttributeValue.builder().s(rateId(recipient, nowSeconds)).build()))
+                    .updateExpression("SET expiresAt = :expiresAt ADD sent :one")
+                    .conditionExpression("attribute_not_exists(sent) OR sent < :cap")
+                    .expressionAttributeValues(Map.of(
+                            ":expiresAt", AttributeValue.builder().n(String.valueOf(hourStart + 2 * HOUR_SECONDS)).build(),
+                            ":one", AttributeValue.builder().n("1").build(),
+                            ":cap", AttributeValue.builder().n(String.valueOf(maxPerHour)).build()
+                    ))
+                    .build());
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+    }
+
+    // Gives back the slot of a digest that was not sent
+    public static void releaseRateSlot(DynamoDbClient dynamoDbClient, String tableName, String recipient,
+                                       long nowSeconds) {
+
+        try {
+            dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(tableName)
+                    .key(Map.of("digestId", AttributeValue.builder().s(rateId(recipient, nowSeconds)).build()))
+                    .updateExpression("ADD sent :minusOne")
+                    .conditionExpression("sent > :zero")
+                    .expressionAttributeValues(Map.of(
+                            ":minusOne", AttributeValue.builder().n("-1").build(),
+                            ":zero", AttributeValue.builder().n("0").build()
+                    ))
+                    .build());
+        } catch (Exception e) {
+            System.err.println("Failed to release digest slot of " + recipient + ": " + e.getMessage());
+        }
+    }
+
+    public static String rateId(String recipient, long nowSeconds) {
+        return "rate#" + recipient + "#" + (nowSeconds - Math.floorMod(nowSeconds, HOUR_SECONDS));
+    }
+
+    public static String subjectOf(String subject, int eventCount) {
+
+        String digestSubject = eventCount == 1 ? subject : subject + " (" + eventCount + " updates)";
+        return digestSubject.length() > MAX_SUBJECT_LENGTH ? digestSubject.substring(0, MAX_SUBJECT_LENGTH) : digestSubject;
+    }
+
+    public static String render(List<String> entries) {
+
+        if (entries.size() == 1) {
+            return entries.get(0);
+        }
+        return "You have " + entries.size() + " task updates:\n\n" + String.join("\n\n----------\n\n", entries);
+    }
+}
@@ -0,0 +1,78 @@
+package org.umaxcode.utils;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class SqsBatches {
+
+    private static final int MAX_BATCH_SIZE = 10;
+    private static final int MAX_BATCH_RETRIES = 3;
+
+    // Sends the entries in batches of ten and returns the ones that could not be delivered
+    public static List<SendMessageBatchRequestEntry> sendMessageBatch(SqsClient sqsClient, String queueUrl,
+                                                                      List<SendMessageBatchRequestEntry> entries) {
+
+        List<SendMessageBatchRequestEntry> failed = new ArrayList<>();
+        for (int from = 0; from < entries.size(); from += MAX_BATCH_SIZE) {
+            List<SendMessageBatchRequestEntry> batch = entries.subList(from, Math.min(from + MAX_BATCH_SIZE, entries.size()));
+
+            for (int attempt = 0; !batch.isEmpty(); attempt++) {
+                if (attempt > 0) {
+                    backoff(attempt);
+                }
+
+                SendMessageBatchResponse response = sqsClient.sendMessageBatch(SendMessageBatchRequest.builder()
+                        .queueUrl(queueUrl)
+                        .entries(batch)
+                        .build());
+
+                if (!response.hasFailed() || response.failed().isEmpty()) {
+                    break;
+                }
+
+                // Sender faults (bad attributes, oversized body) fail the same way on every retry
+                Set<String> retryableIds = response.failed().stream()
+                        .filter(error -> !error.senderFault())
+                        .map(BatchResultErrorEntry::id)
+                        .collect(Collectors.toSet());
+                Map<String, BatchResultErrorEntry> errors = response.failed().stream()
+                        .collect(Collectors.toMap(BatchResultErrorEntry::id, error -> error));
+
+                List<SendMessageBatchRequestEntry> retry = new ArrayList<>();
+                for (SendMessageBatchRequestEntry entry : batch) {
+                    if (retryableIds.contains(entry.id()) && attempt < MAX_BATCH_RETRIES) {
+                        retry.add(entry);
+                    } else if (errors.containsKey(entry.id())) {
+                        BatchResultErrorEntry error = errors.get(entry.id());
+                        System.err.println("Failed to send message " + entry.id() + " to SQS: " + error.code() + " "
+                                + error.message());
+                        failed.add(entry);
+                    }
+                }
+                batch = retry;
+            }
+        }
+        return failed;
+    }
+
+    private static void backoff(int attempt) {
+
+        try {
+            Thread.sleep(Math.min(50L << attempt, 1000L));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.umaxcode.utils;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class StatusDeadlineKeys {
+
+    public static final String ATTRIBUTE = "statusDeadline";
+
+    // Status first, so one status is a key prefix whose items are already in deadline order
+    public static String keyOf(String status, String deadline) {
+        return status + "#" + deadline;
+    }
+
+    public static String prefixOf(String status) {
+        return status + "#";
+    }
+}
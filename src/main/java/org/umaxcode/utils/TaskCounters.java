@@ -0,0 +1,250 @@
+package org.umaxcode.utils;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.Put;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.Update;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+// Counter items maintained from the tasks stream and read back by the summary endpoint
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class TaskCounters {
+
+    public static final String ALL_COUNTER = "all";
+    public static final List<String> STATUSES = List.of("open", "completed", "expired");
+    public static final int MAX_TRANSACTION_ITEMS = 100;
+
+    // Stream records are kept for 24 hours, markers only need to outlive every possible retry of their record
+    private static final long APPLIED_MARKER_TTL_SECONDS = 2 * 24 * 60 * 60;
+    private static final String APPLIED_PREFIX = "applied#";
+    private static final int DEFAULT_ALL_SHARD_COUNT = 8;
+
+    // Every task write also updates the overall counter, so it is spread over this many items, each good for about
+    // 1000 writes a second. Readers sum the shards, so the count can only ever be raised.
+    public static int allShardCount() {
+
+        String shardCount = System.getenv("TASK_COUNTERS_ALL_SHARDS");
+        return shardCount == null || shardCount.isBlank() ? DEFAULT_ALL_SHARD_COUNT : Integer.parseInt(shardCount);
+    }
+
+    // Shard 0 keeps the original item id, so counts written before sharding are still summed
+    public static List<String> allCounterIds() {
+        return IntStream.range(0, allShardCount())
+                .mapToObj(shard -> shard == 0 ? ALL_COUNTER : ALL_COUNTER + "#" + shard)
+                .toList();
+    }
+
+    // Removes what the old image counted and adds what the new image counts, so any write nets out correctly
+    public static void addCounterDeltas(Map<String, Map<String, Long>> deltas,
+                                        String oldStatus, String oldResponsibility, String oldAssignedBy,
+                                        String newStatus, String newResponsibility, String newAssignedBy) {
+
+        addContribution(deltas, oldStatus, oldResponsibility, oldAssignedBy, -1);
+        addContribution(deltas, newStatus, newResponsibility, newAssignedBy, 1);
+    }
+
+    // Applies the deltas of each stream record exactly once, deltasByRecord is keyed by the record's event id.
+    // Returns the event ids whose deltas could not be applied.
+    public static Set<String> applyCounterDeltas(DynamoDbClient dynamoDbClient, String countersTableName,
+                                                 Map<String, Map<String, Map<String, Long>>> deltasByRecord) {
+
+        Set<String> failed = new LinkedHashSet<>();
+        for (List<String> group : groupRecords(deltasByRecord)) {
+            try {
+                applyGroup(dynamoDbClient, countersTableName, group, deltasByRecord);
+            } catch (TransactionCanceledException e) {
+                if (!markerExisted(e)) {
+                    System.err.println("Failed to apply counter deltas: " + e.getMessage());
+                    failed.addAll(group);
+                } else if (group.size() > 1) {
+                    // Part of the group was applied by an earlier attempt, so each record goes on its own,
+                    // a single record whose marker already exists is simply skipped
+                    for (String recordId : group) {
+                        failed.addAll(applyCounterDeltas(dynamoDbClient, countersTableName,
+                                Map.of(recordId, deltasByRecord.get(recordId))));
+                    }
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Failed to apply counter deltas: " + e.getMessage());
+                failed.addAll(group);
+            }
+        }
+        return failed;
+    }
+
+    // Counter writes are absolute, so the rebuild also resets counters whose tasks no longer exist. The overall count
+    // goes to shard 0 and the other shards are reset with them.
+    public static void replaceCounters(DynamoDbClient dynamoDbClient, String countersTableName,
+                                       Map<String, Map<String, Long>> counts) {
+
+        Map<String, Map<String, Long>> replacements = new HashMap<>(counts);
+        Map<String, AttributeValue> lastEvaluatedKey = null;
+        do {
+            ScanResponse scanResponse = dynamoDbClient.scan(ScanRequest.builder()
+                    .tableName(countersTableName)
+                    .projectionExpression("counterId")
+                    .exclusiveStartKey(lastEvaluatedKey)
+                    .build());
+            for (Map<String, AttributeValue> item : scanResponse.items()) {
+                String counterId = item.get("counterId").s();
+                if (!counterId.startsWith(APPLIED_PREFIX)) {
+                    replacements.putIfAbsent(counterId, Map.of());
+                }
+            }
+            lastEvaluatedKey = scanResponse.hasLastEvaluatedKey() ? scanResponse.lastEvaluatedKey() : null;
+        } while (lastEvaluatedKey != null);
+
+        replacements.forEach((counterId, statusCounts) -> {
+            Map<String, AttributeValue> item = new HashMap<>();
+            item.put("counterId", AttributeValue.builder().s(counterId).build());
+            for (String status : STATUSES) {
+                item.put(status, AttributeValue.builder().n(String.valueOf(statusCounts.getOrDefault(status, 0L))).build());
+            }
+            dynamoDbClient.putItem(PutItemRequest.builder()
+                    .tableName(countersTableName)
+                    .item(item)
+                    .build());
+        });
+    }
+
+    // A marker item per record and the summed counter updates go in one transaction, so a retry can never add them twice
+    private static void applyGroup(DynamoDbClient dynamoDbClient, String countersTableName, List<String> group,
+                                   Map<String, Map<String, Map<String, Long>>> deltasByRecord) {
+
+        long expiresAt = Instant.now().getEpochSecond() + APPLIED_MARKER_TTL_SECONDS;
+        List<TransactWriteItem> writes = new ArrayList<>();
+        for (String recordId : group) {
+            writes.add(TransactWriteItem.builder()
+                    .put(Put.builder()
+                            .tableName(countersTableName)
+                            .item(Map.of(
+                                    "counterId", AttributeValue.builder().s(APPLIED_PREFIX + recordId).build(),
+                                    "expiresAt", AttributeValue.builder().n(String.valueOf(expiresAt)).build()
+                            ))
+                            .conditionExpression("attribute_not_exists(counterId)")
+                            .build())
+                    .build());
+        }
+
+        // Any shard will do, the marker in the same transaction keeps a retry from counting twice
+        List<String> allCounterIds = allCounterIds();
+        String allCounterId = allCounterIds.get(ThreadLocalRandom.current().nextInt(allCounterIds.size()));
+        sumDeltas(group, deltasByRecord).forEach((counterId, statusDeltas) -> {
+            String shardId = ALL_COUNTER.equals(counterId) ? allCounterId : counterId;
+            StringJoiner updateExpression = new StringJoiner(", ", "ADD ", "");
+            Map<String, String> names = new HashMap<>();
+            Map<String, AttributeValue> values = new HashMap<>();
+            statusDeltas.forEach((status, delta) -> {
+                updateExpression.add("#" + status + " :" + status);
+                names.put("#" + status, status);
+                values.put(":" + status, AttributeValue.builder().n(String.valueOf(delta)).build());
+            });
+
+            writes.add(TransactWriteItem.builder()
+                    .update(Update.builder()
+                            .tableName(countersTableName)
+                            .key(Map.of("counterId", AttributeValue.builder().s(shardId).build()))
+                            .updateExpression(updateExpression.toString())
+                            .expressionAttributeNames(names)
+                            .expressionAttributeValues(values)
+                            .build())
+                    .build());
+        });
+
+        dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder()
+                .transactItems(writes)
+                .build());
+    }
+
+    // Records whose changes cancel out need no marker, the rest are packed into transactions of at most 100 items
+    private static List<List<String>> groupRecords(Map<String, Map<String, Map<String, Long>>> deltasByRecord) {
+
+        List<List<String>> groups = new ArrayList<>();
+        List<String> group = new ArrayList<>();
+        for (String recordId : deltasByRecord.keySet()) {
+            if (sumDeltas(List.of(recordId), deltasByRecord).isEmpty()) {
+                continue;
+            }
+
+            List<String> candidate = new ArrayList<>(group);
+            candidate.add(recordId);
+            if (candidate.size() + sumDeltas(candidate, deltasByRecord).size() > MAX_TRANSACTION_ITEMS) {
+                groups.add(group);
+                candidate = new ArrayList<>(List.of(recordId));
+            }
+            group = candidate;
+        }
+        if (!group.isEmpty()) {
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    // Summed over the group, so each counter item is written at most once and changes that cancel out are dropped
+    private static Map<String, Map<String, Long>> sumDeltas(List<String> recordIds,
+                                                            Map<String, Map<String, Map<String, Long>>> deltasByRecord) {
+
+        Map<String, Map<String, Long>> sums = new HashMap<>();
+        for (String recordId : recordIds) {
+            deltasByRecord.get(recordId).forEach((counterId, statusDeltas) -> statusDeltas.forEach((status, delta) ->
+                    sums.computeIfAbsent(counterId, id -> new HashMap<>()).merge(status, delta, Long::sum)));
+        }
+
+        sums.values().forEach(statusDeltas -> statusDeltas.values().removeIf(delta -> delta == 0));
+        sums.values().removeIf(Map::isEmpty);
+        return sums;
+    }
+
+    private static boolean markerExisted(TransactionCanceledException e) {
+
+        return e.hasCancellationReasons() && e.cancellationReasons().stream()
+                .anyMatch(reason -> "ConditionalCheckFailed".equals(reason.code()));
+    }
+
+    private static void addContribution(Map<String, Map<String, Long>> deltas, String status,
+                                        String responsibility, String assignedBy, long delta) {
+
+        if (status == null || !STATUSES.contains(status)) {
+            return;
+        }
+
+        List<String> counterIds = new ArrayList<>();
+        counterIds.add(ALL_COUNTER);
+        if (responsibility != null) {
+            counterIds.add(responsibilityCounter(responsibility));
+        }
+        if (assignedBy != null) {
+            counterIds.add(assignedByCounter(assignedBy));
+        }
+
+        for (String counterId : counterIds) {
+            deltas.computeIfAbsent(counterId, id -> new HashMap<>()).merge(status, delta, Long::sum);
+        }
+    }
+
+    public static String responsibilityCounter(String email) {
+        return "responsibility#" + email;
+    }
+
+    public static String assignedByCounter(String email) {
+        return "assignedBy#" + email;
+    }
+}
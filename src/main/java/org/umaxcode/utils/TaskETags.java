@@ -0,0 +1,66 @@
+package org.umaxcode.utils;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.umaxcode.domain.dto.response.TaskDto;
+import org.umaxcode.domain.dto.response.TaskPageDto;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class TaskETags {
+
+    // Every change to a task bumps its version, so id + version identifies the representation
+    public static String forTask(TaskDto task, String fields) {
+
+        MessageDigest digest = newDigest();
+        update(digest, fields);
+        update(digest, task);
+        return toETag(digest);
+    }
+
+    public static String forPage(TaskPageDto page, String fields) {
+
+        MessageDigest digest = newDigest();
+        update(digest, fields);
+        for (TaskDto task : page.tasks()) {
+            update(digest, task);
+        }
+        update(digest, page.nextCursor());
+        return toETag(digest);
+    }
+
+    private static void update(MessageDigest digest, TaskDto task) {
+
+        update(digest, task.getId());
+        update(digest, String.valueOf(task.getVersion()));
+    }
+
+    private static void update(MessageDigest digest, String value) {
+
+        if (value != null) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((byte) 0);
+    }
+
+    // Must stay weak. API Gateway gzips responses after they leave the function, without changing the tag, and the
+    // tag does not depend on the Accept header, so the JSON, CBOR, gzip and identity bodies all carry this one tag.
+    // A strong tag promises byte-identical bodies, which would let caches combine ranges of different encodings.
+    private static String toETag(MessageDigest digest) {
+
+        return "W/\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+    }
+
+    private static MessageDigest newDigest() {
+
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.umaxcode.utils;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+
+import java.util.Map;
+
+// The derived index keys are only read once their index exists and the backfill has keyed the tasks written before them
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class TaskIndexRollout {
+
+    // Sweep checkpoint item holding the backfill cursor, and completedAt once the whole table is keyed
+    public static final String BACKFILL_CHECKPOINT_ID = "task-index-backfill";
+
+    private static final long RECHECK_MILLIS = 60_000;
+
+    private static volatile boolean backfilled;
+    private static volatile long checkedAtMillis;
+
+    // Follows the TaskIndexRolloutStage template parameter, 1 adds responsibilityDeadlineIndex, 2 deadlineBucketIndex
+    // and 3 responsibilityStatusDeadlineIndex
+    public static int stage() {
+
+        String stage = System.getenv("TASK_INDEX_ROLLOUT_STAGE");
+        return stage == null || stage.isBlank() ? 0 : Integer.parseInt(stage);
+    }
+
+    public static boolean deadlineBucketIndexReady(DynamoDbClient dynamoDbClient, String checkpointsTableName) {
+        return stage() >= 2 && backfilled(dynamoDbClient, checkpointsTableName);
+    }
+
+    public static boolean statusDeadlineIndexReady(DynamoDbClient dynamoDbClient, String checkpointsTableName) {
+        return stage() >= 3 && backfilled(dynamoDbClient, checkpointsTableName);
+    }
+
+    // A finished backfill stays finished, so only the negative answer is read again, at most once a minute
+    public static boolean backfilled(DynamoDbClient dynamoDbClient, String checkpointsTableName) {
+
+        long now = System.currentTimeMillis();
+        if (backfilled || now - checkedAtMillis < RECHECK_MILLIS) {
+            return backfilled;
+        }
+
+        Map<String, AttributeValue> item = dynamoDbClient.getItem(GetItemRequest.builder()
+                .tableName(checkpointsTableName)
+                .key(Map.of("checkpointId", AttributeValue.builder().s(BACKFILL_CHECKPOINT_ID).build()))
+                .consistentRead(true)
+                .build()).item();
+        backfilled = item != null && item.get("completedAt") != null;
+        checkedAtMillis = now;
+        return backfilled;
+    }
+}
@@ -0,0 +1,72 @@
+package org.umaxcode.cache;
+
+import org.junit.jupiter.api.Test;
+import org.umaxcode.domain.dto.response.CacheStatsDto;
+import org.umaxcode.domain.dto.response.TaskDto;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TaskReadCacheTest {
+
+    @Test
+    public void get_afterTtl_missesAndCountsAnExpiration() throws Exception {
+        TaskReadCache cache = new TaskReadCache(10, 1);
+        cache.put("task-1", task("task-1"));
+
+        assertNotNull(cache.get("task-1"));
+        Thread.sleep(1100);
+        assertNull(cache.get("task-1"));
+
+        CacheStatsDto stats = cache.stats();
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.misses());
+        assertEquals(1, stats.expirations());
+        assertEquals(0, stats.size());
+    }
+
+    @Test
+    public void put_beyondMaxSize_evictsTheLeastRecentlyRead() {
+        TaskReadCache cache = new TaskReadCache(2, 60);
+        cache.put("task-1", task("task-1"));
+        cache.put("task-2", task("task-2"));
+
+        cache.get("task-1");
+        cache.put("task-3", task("task-3"));
+
+        assertNotNull(cache.get("task-1"));
+        assertNull(cache.get("task-2"));
+        assertNotNull(cache.get("task-3"));
+        assertEquals(1, cache.stats().evictions());
+    }
+
+    @Test
+    public void put_zeroTtlOrSize_cachesNothing() {
+        TaskReadCache noTtl = new TaskReadCache(10, 0);
+        TaskReadCache noSize = new TaskReadCache(0, 60);
+
+        noTtl.put("task-1", task("task-1"));
+        noSize.put("task-1", task("task-1"));
+
+        assertNull(noTtl.get("task-1"));
+        assertNull(noSize.get("task-1"));
+    }
+
+    @Test
+    public void invalidate_cachedTask_isCountedAndDropped() {
+        TaskReadCache cache = new TaskReadCache(10, 60);
+        cache.put("task-1", task("task-1"));
+
+        cache.invalidate("task-1");
+        cache.invalidate("task-2");
+
+        assertNull(cache.get("task-1"));
+        assertEquals(1, cache.stats().invalidations());
+    }
+
+    private static TaskDto task(String id) {
+        return TaskDto.builder()
+                .id(id)
+                .version(1L)
+                .build();
+    }
+}
@@ -0,0 +1,63 @@
+package org.umaxcode.mapper;
+
+import org.junit.jupiter.api.Test;
+import org.umaxcode.domain.event.TaskEvent;
+import org.umaxcode.exception.TaskManagementException;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TaskEventCodecTest {
+
+    private static final TaskEvent EVENT = new TaskEvent(TaskEvent.CURRENT_VERSION, "task-reopen", "task-1",
+            "Write report", "Quarterly numbers", "2026-10-20T10:00", "dev@example.com", "admin@example.com",
+            "arn:aws:sns:eu-west-1:123456789012:reopened", "Task Reopened");
+
+    @Test
+    public void roundTrip_keepsEveryField() {
+        String body = TaskEventCodec.encode(EVENT);
+
+        assertTrue(TaskEventCodec.isEncoded(body));
+        assertEquals(EVENT, TaskEventCodec.decode(body));
+    }
+
+    @Test
+    public void encode_usesShortNamesAndSkipsNulls() {
+        TaskEvent event = new TaskEvent(TaskEvent.CURRENT_VERSION, "task-creation", "task-1",
+                "Write report", null, null, null, null, null, null);
+
+        assertEquals("{\"v\":1,\"r\":\"task-creation\",\"id\":\"task-1\",\"n\":\"Write report\"}", TaskEventCodec.encode(event));
+    }
+
+    @Test
+    public void decode_ignoresUnknownProperties() {
+        TaskEvent event = TaskEventCodec.decode("{\"v\":1,\"r\":\"task-complete\",\"id\":\"task-1\",\"x\":\"later\"}");
+
+        assertEquals("task-complete", event.reason());
+        assertEquals("task-1", event.taskId());
+    }
+
+    @Test
+    public void decode_rejectsNewerVersionsAndMalformedBodies() {
+        assertThrows(TaskManagementException.class, () -> TaskEventCodec.decode("{\"v\":2,\"id\":\"task-1\"}"));
+        assertThrows(TaskManagementException.class, () -> TaskEventCodec.decode("{\"v\":"));
+    }
+
+    @Test
+    public void legacyAttributes_mapToTheSameEvent() {
+        TaskEvent event = TaskEventCodec.fromLegacyAttributes(Map.of(
+                "reason", "task-reopen",
+                "taskId", "task-1",
+                "name", "Write report",
+                "description", "Quarterly numbers",
+                "deadline", "2026-10-20T10:00",
+                "receiver", "dev@example.com",
+                "assignedBy", "admin@example.com",
+                "topicArn", "arn:aws:sns:eu-west-1:123456789012:reopened",
+                "messageSubject", "Task Reopened"
+        ));
+
+        assertEquals(EVENT, event);
+    }
+}
@@ -0,0 +1,58 @@
+package org.umaxcode.search;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TaskSearchSnapshotTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void search_rankedTermAndPrefixQueries_matchIndexedText() throws Exception {
+        TaskSearchSnapshot snapshot = build(Map.of(
+                "task-1", Tokenizer.termFrequencies("Deploy backend", "Deploy the API to production", null),
+                "task-2", Tokenizer.termFrequencies("Write docs", "Document the deployment process", "Needs review")
+        ), "base.idx");
+
+        SearchResult exact = snapshot.search("deploy", 10);
+        assertEquals(1, exact.totalHits());
+        assertEquals("task-1", exact.hits().get(0).taskId());
+
+        SearchResult prefix = snapshot.search("deplo*", 10);
+        assertEquals(List.of("task-1", "task-2"), prefix.hits().stream().map(SearchHit::taskId).toList());
+
+        assertEquals(0, snapshot.search("missing", 10).totalHits());
+    }
+
+    @Test
+    public void merge_changedAndRemovedTasks_replaceTheirPostings() throws Exception {
+        TaskSearchSnapshot base = build(Map.of(
+                "task-1", Tokenizer.termFrequencies("Deploy backend", null, null),
+                "task-2", Tokenizer.termFrequencies("Fix login", null, null)
+        ), "base.idx");
+
+        Map<String, Map<String, Integer>> changes = new LinkedHashMap<>();
+        changes.put("task-1", Map.of());
+        changes.put("task-2", Tokenizer.termFrequencies("Fix login before deploy", null, null));
+        Path target = tempDir.resolve("merged.idx");
+        TaskSearchSnapshotWriter.merge(base, changes, target);
+        TaskSearchSnapshot merged = TaskSearchSnapshot.open(target);
+
+        assertEquals(List.of("task-2"), merged.search("deploy", 10).hits().stream().map(SearchHit::taskId).toList());
+        assertEquals(0, merged.search("backend", 10).totalHits());
+    }
+
+    private TaskSearchSnapshot build(Map<String, Map<String, Integer>> tasks, String fileName) throws Exception {
+        Path target = tempDir.resolve(fileName);
+        TaskSearchSnapshotWriter.merge(TaskSearchSnapshot.empty(), new LinkedHashMap<>(tasks), target);
+        return TaskSearchSnapshot.open(target);
+    }
+}
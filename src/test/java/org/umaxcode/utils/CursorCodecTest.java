@@ -0,0 +1,71 @@
+package org.umaxcode.utils;
+
+import org.junit.jupiter.api.Test;
+import org.umaxcode.exception.TaskManagementException;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CursorCodecTest {
+
+    @Test
+    public void key_roundTrip_keepsStringAndNumberAttributes() {
+        Map<String, AttributeValue> key = Map.of(
+                "taskId", AttributeValue.builder().s("task-1").build(),
+                "isNotifiedForApproachDeadline", AttributeValue.builder().n("0").build()
+        );
+
+        String cursor = CursorCodec.encodeKey(key);
+
+        assertEquals(key, CursorCodec.decodeKey(cursor));
+    }
+
+    @Test
+    public void segments_roundTrip_keepsExhaustedSegmentsEmpty() {
+        List<Map<String, AttributeValue>> segmentKeys = List.of(
+                Map.of("taskId", AttributeValue.builder().s("task-1").build()),
+                Map.of(),
+                Map.of("taskId", AttributeValue.builder().s("task-9").build())
+        );
+
+        List<Map<String, AttributeValue>> decoded = CursorCodec.decodeSegments(CursorCodec.encodeSegments(segmentKeys));
+
+        assertEquals(3, decoded.size());
+        assertEquals(segmentKeys.get(0), decoded.get(0));
+        assertTrue(decoded.get(1).isEmpty());
+        assertEquals(segmentKeys.get(2), decoded.get(2));
+    }
+
+    @Test
+    public void decodeKey_cursorOfAnotherIndex_throwsTaskManagementException() {
+        String cursor = CursorCodec.encodeKey(Map.of(
+                "taskId", AttributeValue.builder().s("task-1").build(),
+                "responsibility", AttributeValue.builder().s("user@example.com").build()
+        ));
+
+        assertEquals(2, CursorCodec.decodeKey(cursor, Set.of("taskId", "responsibility")).size());
+        assertThrows(TaskManagementException.class,
+                () -> CursorCodec.decodeKey(cursor, Set.of("taskId", "responsibility", "deadline")));
+    }
+
+    @Test
+    public void decodeSegments_otherSegmentCount_throwsTaskManagementException() {
+        String cursor = CursorCodec.encodeSegments(List.of(
+                Map.of("taskId", AttributeValue.builder().s("task-1").build()),
+                Map.of()
+        ));
+
+        assertEquals(2, CursorCodec.decodeSegments(cursor, 2).size());
+        assertThrows(TaskManagementException.class, () -> CursorCodec.decodeSegments(cursor, 4));
+    }
+
+    @Test
+    public void decode_tamperedCursor_throwsTaskManagementException() {
+        assertThrows(TaskManagementException.class, () -> CursorCodec.decodeSegments("not-a-cursor"));
+        assertThrows(TaskManagementException.class, () -> CursorCodec.decodeKey("W10"));
+    }
+}
@@ -0,0 +1,43 @@
+package org.umaxcode.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeadlineBucketsTest {
+
+    @Test
+    public void bucketOf_sameTask_alwaysLandsInTheSameShardOfItsHour() {
+        LocalDateTime deadline = LocalDateTime.of(2025, 3, 14, 9, 45, 12);
+
+        String bucket = DeadlineBuckets.bucketOf("task-1", deadline, 8);
+
+        assertTrue(bucket.startsWith("2025-03-14T09#"));
+        assertEquals(bucket, DeadlineBuckets.bucketOf("task-1", deadline.withMinute(5), 8));
+    }
+
+    @Test
+    public void bucketsBetween_coversEveryShardOfEachHour() {
+        List<String> buckets = DeadlineBuckets.bucketsBetween(
+                LocalDateTime.of(2025, 3, 14, 9, 45), LocalDateTime.of(2025, 3, 14, 10, 45), 4);
+
+        assertEquals(8, buckets.size());
+        assertEquals("2025-03-14T09#0", buckets.get(0));
+        assertEquals("2025-03-14T10#3", buckets.get(7));
+        assertTrue(buckets.contains(DeadlineBuckets.bucketOf("task-1", LocalDateTime.of(2025, 3, 14, 10, 15), 4)));
+    }
+
+    @Test
+    public void hourOfBucket_roundTripsThroughStartOfHour() {
+        String bucket = DeadlineBuckets.bucketOf("task-1", LocalDateTime.of(2025, 3, 14, 9, 45), 8);
+
+        String hour = DeadlineBuckets.hourOfBucket(bucket);
+
+        assertEquals("2025-03-14T09", hour);
+        assertEquals(LocalDateTime.of(2025, 3, 14, 9, 0), DeadlineBuckets.startOfHour(hour));
+        assertEquals(hour, DeadlineBuckets.hourOf(DeadlineBuckets.startOfHour(hour)));
+    }
+}
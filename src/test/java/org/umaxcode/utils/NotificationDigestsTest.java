@@ -0,0 +1,165 @@
+package org.umaxcode.utils;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NotificationDigestsTest {
+
+    private static final long NOW = 1_700_000_000L;
+
+    @Test
+    public void subjectOf_oneOrMoreEvents_countsTheUpdates() {
+        assertEquals("Task created", NotificationDigests.subjectOf("Task created", 1));
+        assertEquals("Task created (3 updates)", NotificationDigests.subjectOf("Task created", 3));
+        assertEquals(100, NotificationDigests.subjectOf("x".repeat(120), 2).length());
+    }
+
+    @Test
+    public void render_oneOrMoreEntries_listsEveryEntry() {
+        assertEquals("first", NotificationDigests.render(List.of("first")));
+
+        String body = NotificationDigests.render(List.of("first", "second"));
+
+        assertTrue(body.startsWith("You have 2 task updates:"));
+        assertTrue(body.contains("first") && body.contains("second"));
+    }
+
+    @Test
+    public void entryOf_longDescription_isTruncated() {
+        String entry = NotificationDigests.entryOf("Deploy", "d".repeat(500), "2026-01-01", "ann", "bob");
+
+        assertTrue(entry.contains("d".repeat(200) + "..."));
+        assertFalse(entry.contains("d".repeat(201)));
+    }
+
+    @Test
+    public void batches_moreEntriesThanTheCap_areSplit() {
+        List<String> entries = IntStream.range(0, 120).mapToObj(String::valueOf).toList();
+
+        List<List<String>> batches = NotificationDigests.batches(entries);
+
+        assertEquals(List.of(50, 50, 20), batches.stream().map(List::size).toList());
+        assertEquals(entries, batches.stream().flatMap(List::stream).toList());
+    }
+
+    @Test
+    public void append_redeliveredMessage_isAppendedOnce() {
+        FakeDigestTable table = new FakeDigestTable();
+
+        append(table, "message-1");
+        append(table, "message-1");
+
+        assertEquals(List.of("entry message-1"), table.entries(NotificationDigests.digestId("ann", "task-creation")));
+    }
+
+    @Test
+    public void append_fullDigest_rollsOverToTheNextPart() {
+        FakeDigestTable table = new FakeDigestTable();
+
+        for (int i = 0; i <= NotificationDigests.maxEntries(); i++) {
+            append(table, "message-" + i);
+        }
+        append(table, "message-" + NotificationDigests.maxEntries());
+
+        assertEquals(NotificationDigests.maxEntries(),
+                table.entries(NotificationDigests.digestId("ann", "task-creation", 0)).size());
+        assertEquals(List.of("entry message-" + NotificationDigests.maxEntries()),
+                table.entries(NotificationDigests.digestId("ann", "task-creation", 1)));
+    }
+
+    @Test
+    public void reserveRateSlot_capReached_refusesUntilASlotIsReleased() {
+        FakeDigestTable table = new FakeDigestTable();
+
+        assertTrue(NotificationDigests.reserveRateSlot(table, "digests", "ann", 2, NOW));
+        assertTrue(NotificationDigests.reserveRateSlot(table, "digests", "ann", 2, NOW));
+        assertFalse(NotificationDigests.reserveRateSlot(table, "digests", "ann", 2, NOW));
+        assertTrue(NotificationDigests.reserveRateSlot(table, "digests", "bob", 2, NOW));
+
+        NotificationDigests.releaseRateSlot(table, "digests", "ann", NOW);
+
+        assertTrue(NotificationDigests.reserveRateSlot(table, "digests", "ann", 2, NOW));
+        assertTrue(NotificationDigests.reserveRateSlot(table, "digests", "ann", 2, NOW + 3600));
+    }
+
+    private static void append(FakeDigestTable table, String messageId) {
+        NotificationDigests.append(table, "digests", "ann", "task-creation", "topic", "Task created",
+                messageId, "entry " + messageId, NOW);
+    }
+
+    // Models the conditions of the digest appends and the rate slot counters
+    private static class FakeDigestTable implements DynamoDbClient {
+
+        private final Map<String, List<String>> entries = new HashMap<>();
+        private final Map<String, Set<String>> messageIds = new HashMap<>();
+        private final Map<String, Long> sent = new HashMap<>();
+
+        @Override
+        public UpdateItemResponse updateItem(UpdateItemRequest request) {
+            String digestId = request.key().get("digestId").s();
+            Map<String, AttributeValue> values = request.expressionAttributeValues();
+
+            if (values.containsKey(":messageId")) {
+                List<String> digestEntries = entries.getOrDefault(digestId, List.of());
+                if (messageIds.getOrDefault(digestId, Set.of()).contains(values.get(":messageId").s())
+                        || digestEntries.size() >= Long.parseLong(values.get(":maxEntries").n())) {
+                    throw conditionFailed();
+                }
+                entries.computeIfAbsent(digestId, id -> new ArrayList<>()).add(values.get(":entry").l().get(0).s());
+                messageIds.computeIfAbsent(digestId, id -> new LinkedHashSet<>()).add(values.get(":messageId").s());
+            } else if (values.containsKey(":cap")) {
+                if (sent.getOrDefault(digestId, 0L) >= Long.parseLong(values.get(":cap").n())) {
+                    throw conditionFailed();
+                }
+                sent.merge(digestId, 1L, Long::sum);
+            } else {
+                if (sent.getOrDefault(digestId, 0L) <= 0) {
+                    throw conditionFailed();
+                }
+                sent.merge(digestId, -1L, Long::sum);
+            }
+            return UpdateItemResponse.builder().build();
+        }
+
+        @Override
+        public GetItemResponse getItem(GetItemRequest request) {
+            Set<String> ids = messageIds.get(request.key().get("digestId").s());
+            return ids == null
+                    ? GetItemResponse.builder().build()
+                    : GetItemResponse.builder().item(Map.of("messageIds", AttributeValue.builder().ss(ids).build())).build();
+        }
+
+        List<String> entries(String digestId) {
+            return entries.getOrDefault(digestId, List.of());
+        }
+
+        private static ConditionalCheckFailedException conditionFailed() {
+            return ConditionalCheckFailedException.builder().message("The conditional request failed").build();
+        }
+
+        @Override
+        public String serviceName() {
+            return "dynamodb";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package org.umaxcode.utils;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TaskCountersTest {
+
+    @Test
+    public void addCounterDeltas_statusChange_movesTheTaskBetweenStatuses() {
+        Map<String, Map<String, Long>> deltas = new HashMap<>();
+
+        TaskCounters.addCounterDeltas(deltas, "open", "ann@example.com", "bob@example.com",
+                "completed", "ann@example.com", "bob@example.com");
+
+        for (String counterId : List.of(TaskCounters.ALL_COUNTER, TaskCounters.responsibilityCounter("ann@example.com"),
+                TaskCounters.assignedByCounter("bob@example.com"))) {
+            assertEquals(-1L, deltas.get(counterId).get("open"));
+            assertEquals(1L, deltas.get(counterId).get("completed"));
+        }
+    }
+
+    @Test
+    public void addCounterDeltas_unchangedTask_netsOutToZero() {
+        Map<String, Map<String, Long>> deltas = new HashMap<>();
+
+        TaskCounters.addCounterDeltas(deltas, "open", "ann@example.com", "bob@example.com",
+                "open", "ann@example.com", "bob@example.com");
+
+        deltas.values().forEach(statusDeltas -> statusDeltas.values().forEach(delta -> assertEquals(0L, delta)));
+    }
+
+    @Test
+    public void applyCounterDeltas_redeliveredRecord_isCountedOnce() {
+        FakeCountersTable table = new FakeCountersTable();
+        Map<String, Map<String, Map<String, Long>>> batch = Map.of("event-1", created("ann@example.com"));
+
+        assertTrue(TaskCounters.applyCounterDeltas(table, "counters", batch).isEmpty());
+        assertTrue(TaskCounters.applyCounterDeltas(table, "counters", batch).isEmpty());
+
+        assertEquals(1L, table.allCount("open"));
+        assertEquals(1L, table.count(TaskCounters.responsibilityCounter("ann@example.com"), "open"));
+    }
+
+    @Test
+    public void applyCounterDeltas_partlyAppliedBatch_appliesOnlyTheNewRecords() {
+        FakeCountersTable table = new FakeCountersTable();
+        TaskCounters.applyCounterDeltas(table, "counters", Map.of("event-1", created("ann@example.com")));
+
+        Map<String, Map<String, Map<String, Long>>> batch = new LinkedHashMap<>();
+        batch.put("event-1", created("ann@example.com"));
+        batch.put("event-2", created("bob@example.com"));
+
+        assertTrue(TaskCounters.applyCounterDeltas(table, "counters", batch).isEmpty());
+
+        assertEquals(2L, table.allCount("open"));
+        assertEquals(1L, table.count(TaskCounters.responsibilityCounter("ann@example.com"), "open"));
+        assertEquals(1L, table.count(TaskCounters.responsibilityCounter("bob@example.com"), "open"));
+    }
+
+    private static Map<String, Map<String, Long>> created(String responsibility) {
+        Map<String, Map<String, Long>> deltas = new HashMap<>();
+        TaskCounters.addCounterDeltas(deltas, null, null, null, "open", responsibility, "admin@example.com");
+        return deltas;
+    }
+
+    // Models the marker condition and the ADD updates of a counters table transaction
+    private static class FakeCountersTable implements DynamoDbClient {
+
+        private final Set<String> markers = new HashSet<>();
+        private final Map<String, Map<String, Long>> counters = new HashMap<>();
+
+        @Override
+        public TransactWriteItemsResponse transactWriteItems(TransactWriteItemsRequest request) {
+            List<CancellationReason> reasons = new ArrayList<>();
+            boolean cancelled = false;
+            for (TransactWriteItem item : request.transactItems()) {
+                boolean conflict = item.put() != null && markers.contains(item.put().item().get("counterId").s());
+                cancelled |= conflict;
+                reasons.add(CancellationReason.builder().code(conflict ? "ConditionalCheckFailed" : "None").build());
+            }
+            if (cancelled) {
+                throw TransactionCanceledException.builder()
+                        .message("Transaction cancelled")
+                        .cancellationReasons(reasons)
+                        .build();
+            }
+
+            for (TransactWriteItem item : request.transactItems()) {
+                if (item.put() != null) {
+                    markers.add(item.put().item().get("counterId").s());
+                } else {
+                    Map<String, Long> statusCounts = counters.computeIfAbsent(
+                            item.update().key().get("counterId").s(), id -> new HashMap<>());
+                    item.update().expressionAttributeNames().forEach((name, status) -> statusCounts.merge(status,
+                            Long.parseLong(item.update().expressionAttributeValues().get(":" + status).n()), Long::sum));
+                }
+            }
+            return TransactWriteItemsResponse.builder().build();
+        }
+
+        long count(String counterId, String status) {
+            return counters.getOrDefault(counterId, Map.of()).getOrDefault(status, 0L);
+        }
+
+        long allCount(String status) {
+            return TaskCounters.allCounterIds().stream().mapToLong(counterId -> count(counterId, status)).sum();
+        }
+
+        @Override
+        public String serviceName() {
+            return "dynamodb";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
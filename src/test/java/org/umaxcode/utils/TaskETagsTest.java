@@ -0,0 +1,58 @@
+package org.umaxcode.utils;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ETag;
+import org.umaxcode.domain.dto.response.TaskDto;
+import org.umaxcode.domain.dto.response.TaskPageDto;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TaskETagsTest {
+
+    @Test
+    public void forTask_sameVersion_givesTheSameWeakTag() {
+        String eTag = TaskETags.forTask(task("task-1", 3L), null);
+
+        assertTrue(eTag.startsWith("W/\""));
+        assertEquals(eTag, TaskETags.forTask(task("task-1", 3L), null));
+    }
+
+    @Test
+    public void forTask_newVersionOrOtherFields_changesTheTag() {
+        String eTag = TaskETags.forTask(task("task-1", 3L), null);
+
+        assertNotEquals(eTag, TaskETags.forTask(task("task-1", 4L), null));
+        assertNotEquals(eTag, TaskETags.forTask(task("task-1", 3L), "name,status"));
+    }
+
+    @Test
+    public void forPage_differentCursor_changesTheTag() {
+        List<TaskDto> tasks = List.of(task("task-1", 1L), task("task-2", 5L));
+
+        String eTag = TaskETags.forPage(TaskPageDto.builder().tasks(tasks).nextCursor("a").build(), null);
+
+        assertEquals(eTag, TaskETags.forPage(TaskPageDto.builder().tasks(tasks).nextCursor("a").build(), null));
+        assertNotEquals(eTag, TaskETags.forPage(TaskPageDto.builder().tasks(tasks).nextCursor("b").build(), null));
+    }
+
+    @Test
+    public void ifNoneMatch_weakComparison_matchesOnlyTheCurrentVersion() {
+        ETag current = ETag.create(TaskETags.forTask(task("task-1", 3L), null));
+        String ifNoneMatch = TaskETags.forTask(task("task-1", 2L), null) + ", " + current.formattedTag();
+
+        assertTrue(current.weak());
+        assertTrue(ETag.parse(ifNoneMatch).stream().anyMatch(eTag -> eTag.compare(current, false)));
+        assertFalse(ETag.parse(TaskETags.forTask(task("task-1", 2L), null)).stream()
+                .anyMatch(eTag -> eTag.compare(current, false)));
+    }
+
+    private static TaskDto task(String id, Long version) {
+        return TaskDto.builder()
+                .id(id)
+                .name("Deploy backend")
+                .version(version)
+                .build();
+    }
+}